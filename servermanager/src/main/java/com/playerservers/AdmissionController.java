@@ -0,0 +1,368 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.ComponentBuilder;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.config.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Decides whether the host has room for another server JVM. Every running server commits its heap
+ * plus a JVM overhead and a CPU share against the host budget; start requests that don't fit wait
+ * in a priority queue, servers whose owner is online first. Optionally the longest-idle empty
+ * servers are stopped to make room for queued starts.
+ */
+public class AdmissionController {
+    private final PlayerServerManager plugin;
+    private final long memoryBudgetMB;
+    private final double cpuBudget;
+    private final double cpuPerServer;
+    private final int overheadPercent;
+    private final boolean evictIdle;
+    private final long evictIdleMillis;
+    private final Map<Integer, Reservation> reservations = new HashMap<>();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparing((Ticket ticket) -> !ticket.ownerOnline).thenComparingLong(ticket -> ticket.sequence));
+    private final Set<Integer> evicting = new HashSet<>();
+    private IntSupplier spareCount;
+    private long spareMemoryMB;
+    private long sequence;
+
+    public AdmissionController(PlayerServerManager plugin, Configuration config) {
+        this.plugin = plugin;
+        long reserveMB = config.getLong("server.capacity.reserve_mb", 1024);
+        long configuredMB = config.getLong("server.capacity.memory_mb", 0);
+        this.memoryBudgetMB = configuredMB > 0 ? configuredMB : Math.max(0, detectHostMemoryMB() - reserveMB);
+        int cores = config.getInt("server.capacity.cpu_cores", 0);
+        this.cpuBudget = (cores > 0 ? cores : Runtime.getRuntime().availableProcessors())
+                * config.getDouble("server.capacity.cpu_overcommit", 2.0);
+        this.cpuPerServer = config.getDouble("server.capacity.cpu_per_server", 1.0);
+        this.overheadPercent = config.getInt("server.capacity.jvm_overhead_percent", 25);
+        this.evictIdle = config.getBoolean("server.capacity.evict_idle", false);
+        this.evictIdleMillis = config.getLong("server.capacity.evict_idle_minutes", 5) * 60_000;
+
+        plugin.getLogger().info("Host capacity: " + memoryBudgetMB + " MB memory, " + String.format("%.1f", cpuBudget) + " CPU shares");
+    }
+
+    /**
+     * Counts warm pool spares, each committing the given heap, against the budget as well.
+     */
+    public synchronized void trackSpares(IntSupplier spareCount, int heapMB) {
+        this.spareCount = spareCount;
+        this.spareMemoryMB = committedMemory(heapMB);
+    }
+
+    /**
+     * Reserves capacity for a server with the given heap. The future completes immediately if the
+     * host has room, otherwise once enough capacity has been released for it. Only a start that
+     * will claim a warm spare, because it runs the spares' heap and profile, may count on taking
+     * over a spare's capacity.
+     */
+    public CompletableFuture<Void> admit(PlayerServer server, int heapMB, boolean usesSpare) {
+        CompletableFuture<Void> admitted = new CompletableFuture<>();
+        List<Ticket> toNotify;
+        List<PlayerServer> victims;
+        synchronized (this) {
+            Reservation reservation = new Reservation(server, committedMemory(heapMB), cpuPerServer, usesSpare);
+            if (queue.isEmpty() && fits(reservation)) {
+                reservations.put(server.getId(), reservation);
+                admitted.complete(null);
+                return admitted;
+            }
+
+            boolean ownerOnline = plugin.getProxy().getPlayer(server.getPlayerUuid()) != null;
+            queue.add(new Ticket(reservation, admitted, ownerOnline, sequence++));
+            plugin.getLogger().info("Host at capacity, queued start of " + server.getServerName() + " (" + queue.size() + " waiting)");
+            victims = evictForQueue();
+            toNotify = new ArrayList<>(queue);
+        }
+        stopAll(victims);
+        notifyPositions(toNotify);
+        return admitted;
+    }
+
+    /**
+     * Frees the capacity held by a server after its process has exited, and admits queued starts.
+     */
+    public void release(PlayerServer server) {
+        List<Ticket> admitted = new ArrayList<>();
+        List<Ticket> waiting;
+        List<PlayerServer> victims = new ArrayList<>();
+        synchronized (this) {
+            evicting.remove(server.getId());
+            if (reservations.remove(server.getId()) == null) {
+                return;
+            }
+            Ticket head;
+            while ((head = queue.peek()) != null && fits(head.reservation)) {
+                queue.poll();
+                reservations.put(head.reservation.server.getId(), head.reservation);
+                admitted.add(head);
+            }
+            if (!queue.isEmpty()) {
+                victims = evictForQueue();
+            }
+            waiting = new ArrayList<>(queue);
+        }
+        stopAll(victims);
+
+        for (Ticket ticket : admitted) {
+            ticket.admitted.complete(null);
+        }
+        notifyPositions(waiting);
+    }
+
+    /**
+     * Removes a queued start request. Returns true if the server was waiting in the queue.
+     */
+    public boolean cancel(PlayerServer server) {
+        Ticket cancelled = null;
+        List<Ticket> waiting;
+        synchronized (this) {
+            for (Ticket ticket : queue) {
+                if (ticket.reservation.server.getId() == server.getId()) {
+                    cancelled = ticket;
+                    break;
+                }
+            }
+            if (cancelled == null) {
+                return false;
+            }
+            queue.remove(cancelled);
+            waiting = new ArrayList<>(queue);
+        }
+        cancelled.admitted.cancel(false);
+        notifyPositions(waiting);
+        return true;
+    }
+
+    /**
+     * Registers a player to be told about queue position changes of a server. Returns the current
+     * 1-based position, or 0 if the server is not queued.
+     */
+    public synchronized int addWaiter(PlayerServer server, UUID playerUuid) {
+        for (Ticket ticket : queue) {
+            if (ticket.reservation.server.getId() == server.getId()) {
+                ticket.waiters.add(playerUuid);
+                return position(ticket);
+            }
+        }
+        return 0;
+    }
+
+    public synchronized int getQueuePosition(PlayerServer server) {
+        for (Ticket ticket : queue) {
+            if (ticket.reservation.server.getId() == server.getId()) {
+                return position(ticket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Whether another warm spare fits without pushing queued or future starts over the budget.
+     */
+    public synchronized boolean hasRoomForSpare() {
+        return queue.isEmpty() && fits(new Reservation(null, spareMemoryMB, cpuPerServer, false));
+    }
+
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    public synchronized long getCommittedMemoryMB() {
+        long committed = 0;
+        for (Reservation reservation : reservations.values()) {
+            committed += reservation.memoryMB;
+        }
+        return committed + spares() * spareMemoryMB;
+    }
+
+    public synchronized double getCommittedCpu() {
+        double committed = 0;
+        for (Reservation reservation : reservations.values()) {
+            // Frozen servers keep their heap but use no CPU
+            if (!reservation.server.isFrozen()) {
+                committed += reservation.cpu;
+            }
+        }
+        return committed + spares() * cpuPerServer;
+    }
+
+    public synchronized int getFrozenCount() {
+        int frozen = 0;
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.server.isFrozen()) {
+                frozen++;
+            }
+        }
+        return frozen;
+    }
+
+    public long getMemoryBudgetMB() {
+        return memoryBudgetMB;
+    }
+
+    public double getCpuBudget() {
+        return cpuBudget;
+    }
+
+    private boolean fits(Reservation reservation) {
+        // A server that can claim a warm spare takes over capacity that is already committed
+        int spareCredit = reservation.usesSpare && spares() > 0 ? 1 : 0;
+        return getCommittedMemoryMB() - spareCredit * spareMemoryMB + reservation.memoryMB <= memoryBudgetMB
+                && getCommittedCpu() - spareCredit * cpuPerServer + reservation.cpu <= cpuBudget + 1e-9;
+    }
+
+    /**
+     * Picks the longest-idle empty servers to stop until the head of the queue would fit once they
+     * exit. The caller stops them after leaving the monitor, since stopping calls back into release.
+     */
+    private List<PlayerServer> evictForQueue() {
+        List<PlayerServer> victims = new ArrayList<>();
+        Ticket head = queue.peek();
+        if (!evictIdle || head == null) {
+            return victims;
+        }
+
+        long freeingMemory = 0;
+        double freeingCpu = 0;
+        for (Integer id : evicting) {
+            Reservation reservation = reservations.get(id);
+            if (reservation != null) {
+                freeingMemory += reservation.memoryMB;
+                freeingCpu += reservation.cpu;
+            }
+        }
+
+        List<Reservation> candidates = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : reservations.values()) {
+            PlayerServer server = reservation.server;
+            if (evicting.contains(server.getId()) || !server.isRunning() || now - server.getLastActive() < evictIdleMillis) {
+                continue;
+            }
+            ServerInfo serverInfo = plugin.getProxy().getServerInfo(server.getServerName());
+            if (serverInfo != null && serverInfo.getPlayers().isEmpty()) {
+                candidates.add(reservation);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(reservation -> reservation.server.getLastActive()));
+
+        for (Reservation candidate : candidates) {
+            boolean wouldFit = getCommittedMemoryMB() - freeingMemory + head.reservation.memoryMB <= memoryBudgetMB
+                    && getCommittedCpu() - freeingCpu + head.reservation.cpu <= cpuBudget + 1e-9;
+            if (wouldFit) {
+                break;
+            }
+            evicting.add(candidate.server.getId());
+            freeingMemory += candidate.memoryMB;
+            freeingCpu += candidate.cpu;
+            victims.add(candidate.server);
+        }
+        return victims;
+    }
+
+    private void stopAll(List<PlayerServer> victims) {
+        for (PlayerServer server : victims) {
+            plugin.getLogger().info("Stopping idle server " + server.getServerName() + " to make room for queued starts");
+            plugin.getServerManager().stopServer(server);
+        }
+    }
+
+    private void notifyPositions(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            int position;
+            synchronized (this) {
+                if (!queue.contains(ticket)) {
+                    continue;
+                }
+                position = position(ticket);
+                if (position == ticket.lastNotifiedPosition) {
+                    continue;
+                }
+                ticket.lastNotifiedPosition = position;
+            }
+            for (UUID uuid : ticket.waiters) {
+                ProxiedPlayer player = plugin.getProxy().getPlayer(uuid);
+                if (player != null) {
+                    player.sendMessage(new ComponentBuilder("The host is full, your server is number " + position + " in the start queue.").color(ChatColor.YELLOW).create());
+                }
+            }
+        }
+    }
+
+    private int position(Ticket ticket) {
+        int position = 1;
+        for (Ticket other : queue) {
+            if (queue.comparator().compare(other, ticket) < 0) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private int spares() {
+        return spareCount == null ? 0 : spareCount.getAsInt();
+    }
+
+    /**
+     * Memory a server with the given heap commits: the heap plus the configured JVM overhead.
+     */
+    public long committedMemory(int heapMB) {
+        return heapMB + (long) heapMB * overheadPercent / 100;
+    }
+
+    private static long detectHostMemoryMB() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize() / (1024 * 1024);
+        }
+        return Runtime.getRuntime().maxMemory() / (1024 * 1024);
+    }
+
+    private static class Reservation {
+        private final PlayerServer server;
+        private final long memoryMB;
+        private final double cpu;
+        private final boolean usesSpare;
+
+        private Reservation(PlayerServer server, long memoryMB, double cpu, boolean usesSpare) {
+            this.server = server;
+            this.memoryMB = memoryMB;
+            this.cpu = cpu;
+            this.usesSpare = usesSpare;
+        }
+    }
+
+    private static class Ticket {
+        private final Reservation reservation;
+        private final CompletableFuture<Void> admitted;
+        private final boolean ownerOnline;
+        private final long sequence;
+        private final Set<UUID> waiters = ConcurrentHashMap.newKeySet();
+        private int lastNotifiedPosition;
+
+        private Ticket(Reservation reservation, CompletableFuture<Void> admitted, boolean ownerOnline, long sequence) {
+            this.reservation = reservation;
+            this.admitted = admitted;
+            this.ownerOnline = ownerOnline;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,901 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.config.Configuration;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deduplicating backups of player servers. Files are cut into content-defined chunks with a gear
+ * rolling hash (FastCDC), so an insertion only changes the chunks around it, and every chunk is
+ * stored once, deflated, under its SHA-256 in a repository shared by all servers. A snapshot is a
+ * gzipped manifest listing each file's size, modification time and chunks.
+ *
+ * Files whose size and modification time match the server's previous snapshot reuse its chunk list
+ * without being read, so a backup of a mostly unchanged world reads and stores only what changed.
+ * Region files are stored per Minecraft chunk instead: only their header is read, and only chunks
+ * whose save timestamp changed since the previous snapshot are read and stored.
+ * Old snapshots are pruned by keep_last, keep_daily and keep_weekly, and chunks no snapshot refers
+ * to any more are removed afterwards. All repository work runs on one thread, which is what keeps
+ * garbage collection from deleting chunks of a backup in progress.
+ */
+public class BackupEngine {
+    private static final String MANIFEST_HEADER = "playerservers-snapshot 1";
+    private static final DateTimeFormatter SNAPSHOT_ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    // Chunk sizes; the stricter mask before the average size pulls chunk sizes towards it
+    private static final int MIN_CHUNK = 16 * 1024;
+    private static final int AVG_CHUNK = 64 * 1024;
+    private static final int MAX_CHUNK = 256 * 1024;
+    private static final long MASK_STRICT = -1L << (64 - 18);
+    private static final long MASK_LOOSE = -1L << (64 - 14);
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: chunk boundaries must never change between runs
+        SplittableRandom random = new SplittableRandom(0x506c617965725356L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final PlayerServerManager plugin;
+    private final ServerManager serverManager;
+    private final Path chunksDir;
+    private final Path snapshotsDir;
+    private final boolean enabled;
+    private final int keepLast;
+    private final int keepDaily;
+    private final int keepWeekly;
+    private final int compressionLevel;
+    private final long saveWaitSeconds;
+    private final ExecutorService executor;
+    private ScheduledTask task;
+
+    public BackupEngine(PlayerServerManager plugin, ServerManager serverManager, Configuration config) {
+        this.plugin = plugin;
+        this.serverManager = serverManager;
+        Path repository = Paths.get(config.getString("server.backups.repository",
+                plugin.getDataFolder().toPath().resolve("backups").resolve("repository").toString()));
+        this.chunksDir = repository.resolve("chunks");
+        this.snapshotsDir = repository.resolve("snapshots");
+        this.enabled = config.getBoolean("server.backups.enabled", true);
+        this.keepLast = config.getInt("server.backups.keep_last", 7);
+        this.keepDaily = config.getInt("server.backups.keep_daily", 7);
+        this.keepWeekly = config.getInt("server.backups.keep_weekly", 4);
+        this.compressionLevel = config.getInt("server.backups.compression_level", 1);
+        this.saveWaitSeconds = config.getLong("server.backups.save_wait_seconds", 5);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayerServer-Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Backs up every local server each intervalHours.
+     */
+    public void start(long intervalHours) {
+        if (!enabled || intervalHours <= 0) {
+            return;
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::backupAll, intervalHours, intervalHours, TimeUnit.HOURS);
+    }
+
+    public void backupAll() {
+        List<PlayerServer> servers = new ArrayList<>(plugin.getPlayerServers().values());
+        for (PlayerServer server : servers) {
+            if (!serverManager.getNodes().isRemote(server)) {
+                backup(server);
+            }
+        }
+        // Queued behind the backups, so it only sees finished snapshots
+        executor.execute(this::collectGarbage);
+    }
+
+    /**
+     * Queues a snapshot of the server. A running server stops saving while its files are read.
+     */
+    public CompletableFuture<Snapshot> backup(PlayerServer server) {
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(createSnapshot(server));
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to back up server " + server.getServerName(), e);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Queues a snapshot of a directory that doesn't belong to a player server, such as the resource
+     * world before it is reset. Whatever writes to it must be stopped.
+     */
+    public CompletableFuture<Snapshot> backup(String name, Path root) {
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(snapshotDirectory(name, root));
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to back up " + name, e);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Snapshots of a server, newest first.
+     */
+    public List<Snapshot> listSnapshots(String serverName) {
+        List<Snapshot> snapshots = new ArrayList<>();
+        Path dir = snapshotsDir.resolve(serverName);
+        if (!Files.isDirectory(dir)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(dir, "*.snap")) {
+            for (Path manifest : manifests) {
+                try (BufferedReader reader = openManifest(manifest)) {
+                    snapshots.add(Snapshot.parse(serverName, reader.readLine()));
+                } catch (IOException | RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Unreadable snapshot manifest " + manifest, e);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to list snapshots of " + serverName, e);
+        }
+        snapshots.sort((a, b) -> b.getId().compareTo(a.getId()));
+        return snapshots;
+    }
+
+    /**
+     * Replaces the server's files with a snapshot. The server is stopped first; the snapshot is
+     * streamed chunk by chunk into a staging directory, which then takes the old directory's place.
+     */
+    public CompletableFuture<Void> restore(PlayerServer server, String snapshotId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Path manifest = snapshotsDir.resolve(server.getServerName()).resolve(snapshotId + ".snap");
+        if (!snapshotId.matches("[0-9]{8}-[0-9]{6}") || !Files.isRegularFile(manifest)) {
+            future.completeExceptionally(new IOException("No snapshot " + snapshotId + " of " + server.getServerName()));
+            return future;
+        }
+        serverManager.stopServer(server).whenComplete((stopped, error) -> executor.execute(() -> {
+            try {
+                requireStopped(server, stopped, error);
+                restoreSnapshot(server, manifest);
+                future.complete(null);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to restore " + server.getServerName() + " from " + snapshotId, e);
+                future.completeExceptionally(e);
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * Restores one file, such as a single region, from a snapshot over the server's current copy.
+     * The server is stopped first.
+     */
+    public CompletableFuture<Void> restoreFile(PlayerServer server, String snapshotId, String path) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Path manifest = snapshotsDir.resolve(server.getServerName()).resolve(snapshotId + ".snap");
+        if (!snapshotId.matches("[0-9]{8}-[0-9]{6}") || !Files.isRegularFile(manifest)) {
+            future.completeExceptionally(new IOException("No snapshot " + snapshotId + " of " + server.getServerName()));
+            return future;
+        }
+        serverManager.stopServer(server).whenComplete((stopped, error) -> executor.execute(() -> {
+            try {
+                requireStopped(server, stopped, error);
+                FileEntry entry = findEntry(manifest, path);
+                if (entry == null) {
+                    throw new IOException("Snapshot " + snapshotId + " has no file " + path);
+                }
+                Path root = Paths.get(serverManager.getServerDirectory(server));
+                Path target = resolveInside(root, entry.path);
+                Path temp = target.resolveSibling(target.getFileName() + ".restore");
+                Files.createDirectories(target.getParent());
+                writeEntry(entry, temp, MessageDigest.getInstance("SHA-256"));
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                plugin.getLogger().info("Restored " + entry.path + " of " + server.getServerName() + " from " + snapshotId);
+                future.complete(null);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to restore " + path + " of " + server.getServerName() + " from " + snapshotId, e);
+                future.completeExceptionally(e);
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * Fails a restore unless the stop before it actually ended the server's process, so files are
+     * never swapped under a running server.
+     */
+    private void requireStopped(PlayerServer server, StopResult stopped, Throwable error) throws IOException {
+        if (error != null) {
+            throw new IOException("Could not stop " + server.getServerName() + " before restoring", error);
+        }
+        if (stopped == null || server.isRunning() || serverManager.getSupervisor().isSupervised(server.getId())) {
+            throw new IOException(server.getServerName() + " is still running, not restoring over it");
+        }
+    }
+
+    private Snapshot createSnapshot(PlayerServer server) throws IOException, NoSuchAlgorithmException {
+        // Frozen servers can't act on commands, but they don't write either
+        boolean saveOff = !server.isFrozen() && serverManager.sendCommand(server, "save-off");
+        try {
+            if (saveOff) {
+                serverManager.sendCommand(server, "save-all flush");
+                sleep(saveWaitSeconds);
+            }
+            return snapshotDirectory(server.getServerName(), Paths.get(serverManager.getServerDirectory(server)));
+        } finally {
+            if (saveOff) {
+                serverManager.sendCommand(server, "save-on");
+            }
+        }
+    }
+
+    private Snapshot snapshotDirectory(String name, Path root) throws IOException, NoSuchAlgorithmException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Directory not found: " + root);
+        }
+        long startedAt = System.currentTimeMillis();
+        List<Snapshot> existing = listSnapshots(name);
+        Map<String, FileEntry> previous = existing.isEmpty() ? new HashMap<>() : loadEntries(name, existing.get(0).getId());
+        long previousStartedAt = existing.isEmpty() ? 0 : existing.get(0).getStartedAt();
+
+        ChunkWriter writer = new ChunkWriter();
+        List<String> entries = new ArrayList<>();
+        long[] totals = new long[2];
+        try {
+            walk(root, previous, previousStartedAt, writer, entries, totals);
+        } finally {
+            writer.close();
+        }
+
+        Snapshot snapshot = new Snapshot(name, nextId(name, startedAt), startedAt, totals[0], totals[1], writer.readBytes, writer.storedBytes);
+        writeManifest(snapshot, entries);
+        prune(name);
+        plugin.getLogger().info(String.format("Backed up %s: %d files, %d MB, read %d MB, stored %d KB new in %dms",
+                name, snapshot.getFileCount(), snapshot.getTotalBytes() >> 20, snapshot.getReadBytes() >> 20,
+                snapshot.getStoredBytes() >> 10, System.currentTimeMillis() - startedAt));
+        return snapshot;
+    }
+
+    /**
+     * Adds a manifest entry for everything under root, storing the chunks of files that changed
+     * since the previous snapshot. totals receives the file count and total bytes.
+     */
+    private void walk(Path root, Map<String, FileEntry> previous, long previousStartedAt, ChunkWriter writer,
+                      List<String> entries, long[] totals) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root)) {
+                    entries.add("D\t" + relative(root, dir));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || file.getFileName().toString().equals("session.lock")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String path = relative(root, file);
+                long mtime = attrs.lastModifiedTime().toMillis();
+                FileEntry last = previous.get(path);
+                char type = 'F';
+                String chunks = null;
+                if (last != null && last.size == attrs.size() && last.mtime == mtime) {
+                    type = last.type;
+                    chunks = last.chunks;
+                } else if (RegionFile.isRegionFile(file, attrs.size())) {
+                    chunks = writer.storeRegion(file, last != null && last.type == 'R' ? last : null, previousStartedAt);
+                    type = chunks == null ? 'F' : 'R';
+                }
+                if (chunks == null) {
+                    chunks = writer.storeFile(file);
+                }
+                entries.add(type + "\t" + attrs.size() + "\t" + mtime + "\t" + chunks + "\t" + path);
+                totals[0]++;
+                totals[1] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Deleted while walking
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void restoreSnapshot(PlayerServer server, Path manifest) throws IOException, NoSuchAlgorithmException {
+        long startedAt = System.currentTimeMillis();
+        Path target = Paths.get(serverManager.getServerDirectory(server));
+        Path staging = target.resolveSibling("." + target.getFileName() + ".restore");
+        serverManager.getReaper().trash(staging);
+        Files.createDirectories(staging);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long files = 0;
+        try (BufferedReader reader = openManifest(manifest)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("D\t")) {
+                    Files.createDirectories(resolveInside(staging, line.substring(2)));
+                } else if (FileEntry.isFile(line)) {
+                    FileEntry entry = FileEntry.parse(line);
+                    Path file = resolveInside(staging, entry.path);
+                    Files.createDirectories(file.getParent());
+                    writeEntry(entry, file, digest);
+                    files++;
+                }
+            }
+        }
+
+        // Nothing of the old directory is touched until the snapshot restored completely
+        serverManager.getReaper().trash(target);
+        Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        plugin.getLogger().info("Restored " + server.getServerName() + " from " + manifest.getFileName() + ": "
+                + files + " files in " + (System.currentTimeMillis() - startedAt) + "ms");
+    }
+
+    /**
+     * Writes one file of a snapshot. Region files are rebuilt from their chunks, packed in order;
+     * Minecraft only cares about the header pointing at them, not where they sit.
+     */
+    private void writeEntry(FileEntry entry, Path file, MessageDigest digest) throws IOException {
+        if (entry.type == 'R') {
+            ByteArrayOutputStream data = new ByteArrayOutputStream(RegionFile.SECTOR_BYTES * 4);
+            try (RegionFile.Writer writer = new RegionFile.Writer(file)) {
+                for (String spec : entry.chunkSpecs()) {
+                    String[] parts = spec.split(":");
+                    data.reset();
+                    copyChunk(parts[2], data, digest);
+                    writer.write(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), data.toByteArray());
+                }
+            }
+        } else {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                for (String hash : entry.chunkList()) {
+                    copyChunk(hash, out, digest);
+                }
+            }
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(entry.mtime));
+    }
+
+    private FileEntry findEntry(Path manifest, String path) throws IOException {
+        try (BufferedReader reader = openManifest(manifest)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (FileEntry.isFile(line)) {
+                    FileEntry entry = FileEntry.parse(line);
+                    if (entry.path.equals(path)) {
+                        return entry;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void copyChunk(String hash, OutputStream out, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(chunkPath(hash)))) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+        }
+        if (!toHex(digest.digest()).equals(hash)) {
+            throw new IOException("Chunk " + hash + " is corrupt");
+        }
+    }
+
+    /**
+     * Applies the retention policy to a server's snapshots: the newest keep_last, plus the newest
+     * of each of the last keep_daily days and keep_weekly weeks that have one.
+     */
+    private void prune(String serverName) throws IOException {
+        List<Snapshot> snapshots = listSnapshots(serverName);
+        Set<String> keep = new HashSet<>();
+        Set<LocalDate> days = new HashSet<>();
+        Set<String> weeks = new HashSet<>();
+        for (int i = 0; i < snapshots.size(); i++) {
+            Snapshot snapshot = snapshots.get(i);
+            LocalDate day = Instant.ofEpochMilli(snapshot.getCreatedAt()).atZone(ZoneOffset.UTC).toLocalDate();
+            String week = day.get(IsoFields.WEEK_BASED_YEAR) + "-" + day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            if (i < keepLast) {
+                keep.add(snapshot.getId());
+            }
+            if (!days.contains(day) && days.size() < keepDaily) {
+                days.add(day);
+                keep.add(snapshot.getId());
+            }
+            if (!weeks.contains(week) && weeks.size() < keepWeekly) {
+                weeks.add(week);
+                keep.add(snapshot.getId());
+            }
+        }
+        for (Snapshot snapshot : snapshots) {
+            if (!keep.contains(snapshot.getId())) {
+                Files.deleteIfExists(snapshotsDir.resolve(serverName).resolve(snapshot.getId() + ".snap"));
+            }
+        }
+    }
+
+    /**
+     * Deletes chunks that no snapshot refers to. Live chunks are collected as the first 64 bits of
+     * their hash in a sorted array, which keeps millions of them in a few MB; a collision only
+     * means a dead chunk survives until it no longer collides.
+     */
+    private void collectGarbage() {
+        if (!Files.isDirectory(chunksDir)) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        long[] live = new long[1024];
+        int count = 0;
+        try (Stream<Path> manifests = Files.walk(snapshotsDir)) {
+            for (Path manifest : (Iterable<Path>) manifests.filter(path -> path.toString().endsWith(".snap"))::iterator) {
+                try (BufferedReader reader = openManifest(manifest)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!FileEntry.isFile(line)) {
+                            continue;
+                        }
+                        for (String hash : FileEntry.parse(line).chunkList()) {
+                            if (count == live.length) {
+                                live = Arrays.copyOf(live, count * 2);
+                            }
+                            live[count++] = Long.parseUnsignedLong(hash.substring(0, 16), 16);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Never sweep on an incomplete mark
+            plugin.getLogger().log(Level.SEVERE, "Failed to read snapshots, skipping backup garbage collection", e);
+            return;
+        }
+        Arrays.sort(live, 0, count);
+
+        long deleted = 0;
+        long freedBytes = 0;
+        try (Stream<Path> chunks = Files.walk(chunksDir)) {
+            for (Path chunk : (Iterable<Path>) chunks.filter(Files::isRegularFile)::iterator) {
+                String name = chunk.getFileName().toString();
+                boolean dead = name.endsWith(".tmp")
+                        || Arrays.binarySearch(live, 0, count, Long.parseUnsignedLong(name.substring(0, 16), 16)) < 0;
+                if (dead) {
+                    freedBytes += Files.size(chunk);
+                    Files.delete(chunk);
+                    deleted++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Backup garbage collection failed", e);
+        }
+        plugin.getLogger().info("Backup garbage collection removed " + deleted + " chunks (" + (freedBytes >> 20) + " MB) in "
+                + (System.currentTimeMillis() - startedAt) + "ms");
+    }
+
+    private Map<String, FileEntry> loadEntries(String name, String snapshotId) throws IOException {
+        Map<String, FileEntry> entries = new HashMap<>();
+        try (BufferedReader reader = openManifest(snapshotsDir.resolve(name).resolve(snapshotId + ".snap"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (FileEntry.isFile(line)) {
+                    FileEntry entry = FileEntry.parse(line);
+                    entries.put(entry.path, entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private String nextId(String serverName, long createdAt) {
+        // Two snapshots within one second would share an id
+        long time = createdAt;
+        String id = SNAPSHOT_ID.format(Instant.ofEpochMilli(time));
+        while (Files.exists(snapshotsDir.resolve(serverName).resolve(id + ".snap"))) {
+            time += 1000;
+            id = SNAPSHOT_ID.format(Instant.ofEpochMilli(time));
+        }
+        return id;
+    }
+
+    private void writeManifest(Snapshot snapshot, List<String> entries) throws IOException {
+        Path dir = snapshotsDir.resolve(snapshot.getServerName());
+        Files.createDirectories(dir);
+        Path temp = dir.resolve(snapshot.getId() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+            writer.write(MANIFEST_HEADER);
+            writer.newLine();
+            writer.write(snapshot.toHeader());
+            writer.newLine();
+            for (String entry : entries) {
+                writer.write(entry);
+                writer.newLine();
+            }
+        }
+        Files.move(temp, dir.resolve(snapshot.getId() + ".snap"), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static BufferedReader openManifest(Path manifest) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(manifest)), StandardCharsets.UTF_8));
+        if (!MANIFEST_HEADER.equals(reader.readLine())) {
+            reader.close();
+            throw new IOException("Not a snapshot manifest: " + manifest);
+        }
+        return reader;
+    }
+
+    private Path chunkPath(String hash) {
+        return chunksDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String relative(Path root, Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static Path resolveInside(Path root, String relative) throws IOException {
+        Path path = root.resolve(relative).normalize();
+        if (!path.startsWith(root)) {
+            throw new IOException("Snapshot entry escapes the server directory: " + relative);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the length of the first chunk of data[0, length). Only the last chunk of a file may be
+     * cut short, so callers pass at least MAX_CHUNK bytes unless the file ends sooner.
+     */
+    static int cutPoint(byte[] data, int length) {
+        if (length <= MIN_CHUNK) {
+            return length;
+        }
+        int end = Math.min(length, MAX_CHUNK);
+        int normal = Math.min(end, AVG_CHUNK);
+        long fingerprint = 0;
+        int i = MIN_CHUNK;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[i] & 0xff];
+            if ((fingerprint & MASK_STRICT) == 0) {
+                return i;
+            }
+        }
+        for (; i < end; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[i] & 0xff];
+            if ((fingerprint & MASK_LOOSE) == 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static void sleep(long seconds) {
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Chunks files and stores the chunks the repository doesn't have yet. Buffers are reused for
+     * the whole snapshot.
+     */
+    private class ChunkWriter {
+        private final byte[] buffer = new byte[MAX_CHUNK];
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(MAX_CHUNK);
+        private final Deflater deflater = new Deflater(compressionLevel);
+        private final MessageDigest digest;
+        private long readBytes;
+        private long storedBytes;
+
+        private ChunkWriter() throws NoSuchAlgorithmException {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        }
+
+        /**
+         * Stores a file's chunks and returns their hashes, comma separated, or "-" for an empty file.
+         */
+        private String storeFile(Path file) throws IOException {
+            StringBuilder chunks = new StringBuilder();
+            try (InputStream in = Files.newInputStream(file)) {
+                int length = 0;
+                boolean eof = false;
+                while (true) {
+                    while (!eof && length < buffer.length) {
+                        int n = in.read(buffer, length, buffer.length - length);
+                        if (n < 0) {
+                            eof = true;
+                        } else {
+                            length += n;
+                        }
+                    }
+                    if (length == 0) {
+                        break;
+                    }
+                    int cut = cutPoint(buffer, length);
+                    if (chunks.length() > 0) {
+                        chunks.append(',');
+                    }
+                    readBytes += cut;
+                    chunks.append(storeChunk(cut));
+                    System.arraycopy(buffer, cut, buffer, 0, length - cut);
+                    length -= cut;
+                }
+            }
+            return chunks.length() == 0 ? "-" : chunks.toString();
+        }
+
+        /**
+         * Stores the Minecraft chunks of a region file that were saved since the previous snapshot
+         * and returns index:timestamp:hash for every chunk, comma separated. A chunk whose timestamp
+         * is unchanged and older than the previous snapshot reuses its hash without being read;
+         * timestamps have one-second resolution, so chunks saved in the second the previous snapshot
+         * started are read again. Returns null if the file isn't a readable region file.
+         */
+        private String storeRegion(Path file, FileEntry last, long previousStartedAt) throws IOException {
+            Map<Integer, String[]> previous = new HashMap<>();
+            if (last != null) {
+                for (String spec : last.chunkSpecs()) {
+                    String[] parts = spec.split(":");
+                    previous.put(Integer.parseInt(parts[0]), parts);
+                }
+            }
+            long previousSecond = previousStartedAt / 1000;
+
+            StringBuilder chunks = new StringBuilder();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                RegionFile.Header header = RegionFile.readHeader(channel);
+                readBytes += 2 * RegionFile.SECTOR_BYTES;
+                for (int i = 0; i < RegionFile.CHUNKS; i++) {
+                    if (!header.isPresent(i)) {
+                        continue;
+                    }
+                    int timestamp = header.getTimestamp(i);
+                    String[] before = previous.get(i);
+                    String hash;
+                    if (before != null && Integer.parseInt(before[1]) == timestamp && (timestamp & 0xffffffffL) < previousSecond) {
+                        hash = before[2];
+                    } else {
+                        byte[] data = RegionFile.readChunk(channel, header, i);
+                        if (data == null) {
+                            return null;
+                        }
+                        readBytes += data.length;
+                        if (data.length > buffer.length) {
+                            return null;
+                        }
+                        System.arraycopy(data, 0, buffer, 0, data.length);
+                        hash = storeChunk(data.length);
+                    }
+                    if (chunks.length() > 0) {
+                        chunks.append(',');
+                    }
+                    chunks.append(i).append(':').append(timestamp).append(':').append(hash);
+                }
+            }
+            return chunks.length() == 0 ? "-" : chunks.toString();
+        }
+
+        private String storeChunk(int length) throws IOException {
+            digest.update(buffer, 0, length);
+            String hash = toHex(digest.digest());
+            Path chunk = chunkPath(hash);
+            if (Files.exists(chunk)) {
+                return hash;
+            }
+
+            compressed.reset();
+            deflater.reset();
+            try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                out.write(buffer, 0, length);
+            }
+            Files.createDirectories(chunk.getParent());
+            Path temp = chunk.resolveSibling(hash + ".tmp");
+            Files.write(temp, compressed.toByteArray());
+            Files.move(temp, chunk, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            storedBytes += compressed.size();
+            return hash;
+        }
+
+        private void close() {
+            deflater.end();
+        }
+    }
+
+    /**
+     * A manifest line: F for a file stored as content-defined chunks, R for a region file stored
+     * as index:timestamp:hash per Minecraft chunk.
+     */
+    private static class FileEntry {
+        private final char type;
+        private final long size;
+        private final long mtime;
+        private final String chunks;
+        private final String path;
+
+        private FileEntry(char type, long size, long mtime, String chunks, String path) {
+            this.type = type;
+            this.size = size;
+            this.mtime = mtime;
+            this.chunks = chunks;
+            this.path = path;
+        }
+
+        private static boolean isFile(String line) {
+            return line.startsWith("F\t") || line.startsWith("R\t");
+        }
+
+        private static FileEntry parse(String line) {
+            String[] parts = line.split("\t", 5);
+            return new FileEntry(line.charAt(0), Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], parts[4]);
+        }
+
+        private List<String> chunkSpecs() {
+            return chunks.equals("-") ? Collections.emptyList() : Arrays.asList(chunks.split(","));
+        }
+
+        /**
+         * Hashes of the repository chunks this file is made of.
+         */
+        private List<String> chunkList() {
+            List<String> specs = chunkSpecs();
+            if (type != 'R') {
+                return specs;
+            }
+            List<String> hashes = new ArrayList<>(specs.size());
+            for (String spec : specs) {
+                hashes.add(spec.substring(spec.lastIndexOf(':') + 1));
+            }
+            return hashes;
+        }
+    }
+
+    /**
+     * One backup of one server.
+     */
+    public static class Snapshot {
+        private final String serverName;
+        private final String id;
+        private final long startedAt;
+        private final long fileCount;
+        private final long totalBytes;
+        private final long readBytes;
+        private final long storedBytes;
+
+        private Snapshot(String serverName, String id, long startedAt, long fileCount, long totalBytes, long readBytes, long storedBytes) {
+            this.serverName = serverName;
+            this.id = id;
+            this.startedAt = startedAt;
+            this.fileCount = fileCount;
+            this.totalBytes = totalBytes;
+            this.readBytes = readBytes;
+            this.storedBytes = storedBytes;
+        }
+
+        private static Snapshot parse(String serverName, String header) {
+            String[] parts = header.split("\t");
+            return new Snapshot(serverName, parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    Long.parseLong(parts[4]), Long.parseLong(parts[5]), Long.parseLong(parts[6]));
+        }
+
+        private String toHeader() {
+            return "S\t" + id + "\t" + startedAt + "\t" + fileCount + "\t" + totalBytes + "\t" + readBytes + "\t" + storedBytes;
+        }
+
+        public String getServerName() {
+            return serverName;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getCreatedAt() {
+            return Instant.from(SNAPSHOT_ID.parse(id)).toEpochMilli();
+        }
+
+        /**
+         * When the snapshot started reading files, which can be earlier than its id says.
+         */
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * Bytes of files that had changed and were read for this snapshot.
+         */
+        public long getReadBytes() {
+            return readBytes;
+        }
+
+        /**
+         * Compressed bytes of chunks this snapshot added to the repository.
+         */
+        public long getStoredBytes() {
+            return storedBytes;
+        }
+    }
+}
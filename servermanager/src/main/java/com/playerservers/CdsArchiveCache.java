@@ -0,0 +1,282 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keeps one dynamic AppCDS archive per template, server jar and child JVM. The first server to
+ * boot without an archive records one with -XX:ArchiveClassesAtExit when it shuts down; later boots
+ * map it with -XX:SharedArchiveFile instead of parsing and verifying the same classes again.
+ *
+ * The archive name contains a hash of the server jar, the template's jars and the `java -version`
+ * output, so changing any of them simply makes servers record a fresh archive, and older archives of
+ * the template are removed once it is published. The JVM checks the size and modification time of
+ * the jar the archive was made from, so it only applies where servers share it by hardlink.
+ */
+public class CdsArchiveCache {
+    private final PlayerServerManager plugin;
+    private final Path archiveDir;
+    private final Path templateDir;
+    private final Path serverJar;
+    private final String templateName;
+    private final String jvmIdentity;
+    private final Set<String> recording = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Recording> pendingRecordings = new ConcurrentHashMap<>();
+    private volatile String cachedJarStamp;
+    private volatile String cachedJarHash;
+    private volatile CachedKey cachedKey;
+
+    public CdsArchiveCache(PlayerServerManager plugin, Configuration config, Path templateDir, Path serverJar) {
+        this.plugin = plugin;
+        this.archiveDir = plugin.getDataFolder().toPath().resolve("cds");
+        this.templateDir = templateDir;
+        this.serverJar = serverJar;
+        this.templateName = templateDir.getFileName().toString();
+        this.jvmIdentity = config.getBoolean("server.jvm.cds.enabled", true) ? detectJvm() : null;
+    }
+
+    /**
+     * Returns the JVM options that make this launch use the template's archive, or record it if
+     * there is none yet and no other server is already recording it.
+     */
+    public List<String> argumentsFor(PlayerServer server) {
+        String key = currentKey();
+        if (key == null) {
+            return Collections.emptyList();
+        }
+
+        Path archive = archiveDir.resolve(templateName + "-" + key + ".jsa");
+        if (Files.isRegularFile(archive)) {
+            List<String> arguments = new ArrayList<>();
+            arguments.add("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+            arguments.add("-Xshare:auto");
+            return arguments;
+        }
+        if (!recording.add(key)) {
+            return Collections.emptyList();
+        }
+
+        Path temp = archiveDir.resolve(templateName + "-" + key + "." + server.getId() + ".tmp");
+        pendingRecordings.put(server.getId(), new Recording(key, temp, archive));
+        plugin.getLogger().info("Recording a class data sharing archive for template " + templateName + " from " + server.getServerName());
+        return Collections.singletonList("-XX:ArchiveClassesAtExit=" + temp.toAbsolutePath());
+    }
+
+    /**
+     * Publishes the archive a server recorded, if it was recording one. The JVM writes it while
+     * exiting, so it is complete once the process is gone.
+     */
+    public void onExit(PlayerServer server) {
+        Recording pending = pendingRecordings.remove(server.getId());
+        if (pending == null) {
+            return;
+        }
+        try {
+            if (Files.isRegularFile(pending.temp) && Files.size(pending.temp) > 0) {
+                Files.move(pending.temp, pending.archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                plugin.getLogger().info("Published class data sharing archive " + pending.archive.getFileName());
+                pruneStale(pending.archive);
+            } else {
+                // Killed servers never get to write the archive; the next boot tries again
+                Files.deleteIfExists(pending.temp);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to publish class data sharing archive for " + templateName, e);
+        } finally {
+            recording.remove(pending.key);
+        }
+    }
+
+    public boolean isEnabled() {
+        return jvmIdentity != null;
+    }
+
+    private void pruneStale(Path current) throws IOException {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(archiveDir, templateName + "-*.jsa")) {
+            for (Path archive : archives) {
+                if (!archive.equals(current)) {
+                    Files.deleteIfExists(archive);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hash of everything the archive depends on, or null if the cache is disabled or the inputs
+     * can't be read. The template is only walked again once the server jar, a template jar or a
+     * directory holding jars has a new modification time, so most launches just stat a few paths.
+     */
+    private String currentKey() {
+        if (jvmIdentity == null) {
+            return null;
+        }
+        CachedKey cached = cachedKey;
+        if (cached != null && cached.isCurrent()) {
+            return cached.key;
+        }
+        try {
+            Files.createDirectories(archiveDir);
+            Map<Path, String> stamps = new HashMap<>();
+            stamps.put(serverJar, stamp(serverJar));
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(jvmIdentity.getBytes(StandardCharsets.UTF_8));
+            digest.update(jarHash().getBytes(StandardCharsets.UTF_8));
+
+            // Plugins and libraries in the template add classes to the archive too
+            if (Files.isDirectory(templateDir)) {
+                List<String> jars = new ArrayList<>();
+                Map<Path, String> directories = new HashMap<>();
+                Set<Path> jarDirectories = new HashSet<>();
+                jarDirectories.add(templateDir);
+                Files.walkFileTree(templateDir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        // Taken before the listing, so a jar added while walking still changes it
+                        directories.put(dir, stamp(attrs));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (file.toString().endsWith(".jar")) {
+                            jars.add(templateDir.relativize(file) + ":" + attrs.size() + ":" + attrs.lastModifiedTime().toMillis());
+                            stamps.put(file, stamp(attrs));
+                            jarDirectories.add(file.getParent());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                for (Path dir : jarDirectories) {
+                    stamps.put(dir, directories.get(dir));
+                }
+                Collections.sort(jars);
+                for (String jar : jars) {
+                    digest.update(jar.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            String key = toHex(digest.digest()).substring(0, 16);
+            cachedKey = new CachedKey(key, stamps);
+            return key;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not fingerprint template " + templateName + " for class data sharing", e);
+            return null;
+        }
+    }
+
+    /**
+     * Content hash of the server jar, recomputed only when its size or modification time changes.
+     */
+    private String jarHash() throws IOException, NoSuchAlgorithmException {
+        String stamp = Files.size(serverJar) + ":" + Files.getLastModifiedTime(serverJar).toMillis();
+        if (!stamp.equals(cachedJarStamp)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            try (InputStream in = Files.newInputStream(serverJar)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+            cachedJarHash = toHex(digest.digest());
+            cachedJarStamp = stamp;
+        }
+        return cachedJarHash;
+    }
+
+    private String detectJvm() {
+        try {
+            Process process = new ProcessBuilder("java", "-version").redirectErrorStream(true).start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream in = process.getInputStream()) {
+                in.transferTo(output);
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IOException("java -version failed");
+            }
+            return output.toString(StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not identify the server JVM, class data sharing disabled: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String stamp(Path path) throws IOException {
+        return stamp(Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    private static String stamp(BasicFileAttributes attrs) {
+        return attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A computed key together with the size and modification time of every path it was built from.
+     */
+    private static class CachedKey {
+        private final String key;
+        private final Map<Path, String> stamps;
+
+        private CachedKey(String key, Map<Path, String> stamps) {
+            this.key = key;
+            this.stamps = stamps;
+        }
+
+        private boolean isCurrent() {
+            for (Map.Entry<Path, String> entry : stamps.entrySet()) {
+                try {
+                    if (!stamp(entry.getKey()).equals(entry.getValue())) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Recording {
+        private final String key;
+        private final Path temp;
+        private final Path archive;
+
+        private Recording(String key, Path temp, Path archive) {
+            this.key = key;
+            this.temp = temp;
+            this.archive = archive;
+        }
+    }
+}
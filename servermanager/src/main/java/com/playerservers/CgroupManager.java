@@ -0,0 +1,253 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Puts every local server process into its own cgroup v2 group with cpu.max, memory.max and io.max
+ * set from its {@link ResourceLimits}, and reads the group's counters back as the server's usage.
+ *
+ * Groups live under a "playerservers" group next to the proxy. If the proxy's own group has no
+ * children yet, the proxy moves itself into a "proxy" leaf first, since cgroup v2 only lets groups
+ * without processes hand controllers down. When cgroups are not mounted or not delegated to the
+ * proxy user, servers simply run without isolation.
+ */
+public class CgroupManager {
+    private static final Path ROOT = Paths.get("/sys/fs/cgroup");
+    private static final long CPU_PERIOD_MICROS = 100_000;
+    private static final List<String> CONTROLLERS = Arrays.asList("cpu", "memory", "io");
+
+    private final PlayerServerManager plugin;
+    private final int memoryOverheadPercent;
+    private final Path parent;
+    private final String ioDevice;
+
+    public CgroupManager(PlayerServerManager plugin, Configuration config, Path serversDir) {
+        this.plugin = plugin;
+        this.memoryOverheadPercent = config.getInt("server.cgroups.memory_overhead_percent", 25);
+        this.parent = config.getBoolean("server.cgroups.enabled", false) ? setUp(config.getString("server.cgroups.parent", "")) : null;
+        this.ioDevice = parent == null ? null : findBlockDevice(serversDir);
+    }
+
+    private Path setUp(String configuredParent) {
+        if (!Files.exists(ROOT.resolve("cgroup.controllers"))) {
+            plugin.getLogger().info("cgroup v2 is not mounted, servers run without resource isolation");
+            return null;
+        }
+
+        try {
+            Path own = ownGroup();
+            Path base = configuredParent.isEmpty() ? own : ROOT.resolve(configuredParent.replaceFirst("^/+", ""));
+            try {
+                enableControllers(base);
+            } catch (IOException e) {
+                if (!base.equals(own)) {
+                    throw e;
+                }
+                // Our own group still holds the proxy process; move it into a leaf and retry
+                Path leaf = own.resolve("proxy");
+                Files.createDirectories(leaf);
+                Files.write(leaf.resolve("cgroup.procs"), String.valueOf(ProcessHandle.current().pid()).getBytes(StandardCharsets.US_ASCII));
+                enableControllers(base);
+            }
+
+            Path group = base.resolve("playerservers");
+            Files.createDirectories(group);
+            enableControllers(group);
+            plugin.getLogger().info("Isolating servers in cgroup " + group);
+            return group;
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("cgroups are not delegated to the proxy (" + e.getMessage() + "), servers run without resource isolation");
+            return null;
+        }
+    }
+
+    /**
+     * Wraps a launch command so the process enters its group before the JVM starts, which keeps all
+     * of its memory charged to the group. Returns the command unchanged when isolation is off.
+     */
+    public List<String> wrapCommand(PlayerServer server, ResourceLimits limits, List<String> command) {
+        Path group = createGroup(server, limits);
+        if (group == null) {
+            return command;
+        }
+        List<String> wrapped = new ArrayList<>(Arrays.asList("sh", "-c", "echo $$ > \"$0\" && exec \"$@\"", group.resolve("cgroup.procs").toString()));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Moves an already running process, such as a claimed warm spare, into the server's group.
+     */
+    public void attach(PlayerServer server, ResourceLimits limits, long pid) {
+        Path group = createGroup(server, limits);
+        if (group == null) {
+            return;
+        }
+        try {
+            Files.write(group.resolve("cgroup.procs"), String.valueOf(pid).getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to move " + server.getServerName() + " into its cgroup", e);
+        }
+    }
+
+    /**
+     * Removes the server's group once its process has exited.
+     */
+    public void remove(PlayerServer server) {
+        if (parent == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(parent.resolve(server.getServerName()));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to remove cgroup of " + server.getServerName(), e);
+        }
+    }
+
+    /**
+     * Reads the group's CPU time, current memory and OOM kill count, or returns null if the server
+     * has no group.
+     */
+    public Usage readUsage(PlayerServer server) {
+        if (parent == null) {
+            return null;
+        }
+        Path group = parent.resolve(server.getServerName());
+        try {
+            long cpuMicros = readKey(group.resolve("cpu.stat"), "usage_usec");
+            long memoryBytes = Long.parseLong(new String(Files.readAllBytes(group.resolve("memory.current")), StandardCharsets.US_ASCII).trim());
+            long oomKills = readKey(group.resolve("memory.events"), "oom_kill");
+            return new Usage(cpuMicros, memoryBytes, oomKills);
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return parent != null;
+    }
+
+    private Path createGroup(PlayerServer server, ResourceLimits limits) {
+        if (parent == null) {
+            return null;
+        }
+        Path group = parent.resolve(server.getServerName());
+        try {
+            Files.createDirectories(group);
+            String quota = limits.getCpuPercent() <= 0 ? "max" : String.valueOf(limits.getCpuPercent() * CPU_PERIOD_MICROS / 100);
+            write(group, "cpu.max", quota + " " + CPU_PERIOD_MICROS);
+            long memoryBytes = (long) limits.getRamMB() * (100 + memoryOverheadPercent) / 100 * 1024 * 1024;
+            write(group, "memory.max", String.valueOf(memoryBytes));
+
+            if (ioDevice != null && (limits.getIoReadMBps() > 0 || limits.getIoWriteMBps() > 0)) {
+                try {
+                    write(group, "io.max", ioDevice
+                            + " rbps=" + bandwidth(limits.getIoReadMBps())
+                            + " wbps=" + bandwidth(limits.getIoWriteMBps()));
+                } catch (IOException e) {
+                    // The io controller may be unavailable even where cpu and memory work
+                    plugin.getLogger().warning("Could not limit disk bandwidth of " + server.getServerName() + ": " + e.getMessage());
+                }
+            }
+            return group;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to set up cgroup for " + server.getServerName() + ", starting it without limits", e);
+            return null;
+        }
+    }
+
+    private static String bandwidth(int mbps) {
+        return mbps <= 0 ? "max" : String.valueOf((long) mbps * 1024 * 1024);
+    }
+
+    private static void enableControllers(Path group) throws IOException {
+        List<String> available = Arrays.asList(new String(Files.readAllBytes(group.resolve("cgroup.controllers")), StandardCharsets.US_ASCII).trim().split("\\s+"));
+        StringBuilder enable = new StringBuilder();
+        for (String controller : CONTROLLERS) {
+            if (available.contains(controller)) {
+                enable.append('+').append(controller).append(' ');
+            } else if (!controller.equals("io")) {
+                throw new IOException("controller " + controller + " is not available in " + group);
+            }
+        }
+        Files.write(group.resolve("cgroup.subtree_control"), enable.toString().trim().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Path ownGroup() throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/cgroup"))) {
+            if (line.startsWith("0::")) {
+                return ROOT.resolve(line.substring(3).replaceFirst("^/+", ""));
+            }
+        }
+        throw new IOException("no cgroup v2 entry in /proc/self/cgroup");
+    }
+
+    private static void write(Path group, String file, String value) throws IOException {
+        Files.write(group.resolve(file), value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long readKey(Path file, String key) throws IOException {
+        for (String line : Files.readAllLines(file)) {
+            if (line.startsWith(key + " ")) {
+                return Long.parseLong(line.substring(key.length() + 1).trim());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the "major:minor" of the whole disk holding the servers, since io.max rejects partitions.
+     */
+    private String findBlockDevice(Path serversDir) {
+        try {
+            long dev = ((Number) Files.getAttribute(serversDir, "unix:dev")).longValue();
+            long major = ((dev >>> 8) & 0xfff) | ((dev >>> 32) & ~0xfffL);
+            long minor = (dev & 0xff) | ((dev >>> 12) & ~0xffL);
+            Path device = Paths.get("/sys/dev/block/" + major + ":" + minor).toRealPath();
+            if (Files.exists(device.resolve("partition"))) {
+                device = device.getParent();
+            }
+            return new String(Files.readAllBytes(device.resolve("dev")), StandardCharsets.US_ASCII).trim();
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            plugin.getLogger().info("Could not determine the disk of " + serversDir + ", disk bandwidth will not be limited");
+            return null;
+        }
+    }
+
+    public static class Usage {
+        private final long cpuMicros;
+        private final long memoryBytes;
+        private final long oomKills;
+
+        private Usage(long cpuMicros, long memoryBytes, long oomKills) {
+            this.cpuMicros = cpuMicros;
+            this.memoryBytes = memoryBytes;
+            this.oomKills = oomKills;
+        }
+
+        /**
+         * Total CPU time used by the group, in microseconds.
+         */
+        public long getCpuMicros() {
+            return cpuMicros;
+        }
+
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        public long getOomKills() {
+            return oomKills;
+        }
+    }
+}
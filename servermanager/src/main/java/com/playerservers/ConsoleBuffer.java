@@ -0,0 +1,92 @@
+package com.playerservers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed-size byte ring holding the most recent console output of one server. Writes copy straight
+ * into the ring without allocating; decoding into lines only happens when someone tails it.
+ */
+public class ConsoleBuffer {
+    private final byte[] data;
+    private final RotatingLog spill;
+    private long written;
+
+    public ConsoleBuffer(int capacityBytes, RotatingLog spill) {
+        this.data = new byte[Math.max(1024, capacityBytes)];
+        this.spill = spill;
+    }
+
+    public void write(byte[] bytes, int offset, int length) {
+        synchronized (this) {
+            int capacity = data.length;
+            int skip = Math.max(0, length - capacity);
+            // Only the last capacity bytes of an oversized write can survive
+            written += skip;
+            int remaining = length - skip;
+            int position = (int) (written % capacity);
+            int first = Math.min(remaining, capacity - position);
+            System.arraycopy(bytes, offset + skip, data, position, first);
+            if (first < remaining) {
+                System.arraycopy(bytes, offset + skip + first, data, 0, remaining - first);
+            }
+            written += remaining;
+        }
+
+        if (spill != null) {
+            spill.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Returns up to maxLines of the most recent complete or partial lines, oldest first.
+     */
+    public List<String> tail(int maxLines) {
+        byte[] snapshot;
+        synchronized (this) {
+            int size = (int) Math.min(written, data.length);
+            snapshot = new byte[size];
+            int start = (int) ((written - size) % data.length);
+            int first = Math.min(size, data.length - start);
+            System.arraycopy(data, start, snapshot, 0, first);
+            System.arraycopy(data, 0, snapshot, first, size - first);
+        }
+
+        List<String> lines = new ArrayList<>();
+        int end = snapshot.length;
+        if (end > 0 && snapshot[end - 1] == '\n') {
+            end--;
+        }
+        for (int i = end - 1; i >= -1 && lines.size() < maxLines; i--) {
+            if (i == -1 || snapshot[i] == '\n') {
+                // The first line may have been cut by the ring wrapping; drop it unless it is all we have
+                if (i == -1 && written > data.length && !lines.isEmpty()) {
+                    break;
+                }
+                String line = new String(snapshot, i + 1, end - i - 1, StandardCharsets.UTF_8);
+                lines.add(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+                end = i;
+            }
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    public synchronized long getTotalBytes() {
+        return written;
+    }
+
+    public void flush() {
+        if (spill != null) {
+            spill.flush();
+        }
+    }
+
+    public void close() {
+        if (spill != null) {
+            spill.close();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies many files on a bounded ForkJoin pool. Large files are copied individually with
+ * {@link FileChannel#transferTo}, small files are grouped into batches so tiny region and config
+ * files don't each pay task overhead. The first failure stops remaining work and is rethrown as
+ * the original IOException.
+ */
+public class CopyEngine {
+    private final ForkJoinPool pool;
+    private final long largeFileThreshold;
+    private final long batchBytes;
+    private final int batchFiles;
+
+    public CopyEngine(int parallelism, long largeFileThreshold, long batchBytes, int batchFiles) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.largeFileThreshold = largeFileThreshold;
+        this.batchBytes = batchBytes;
+        this.batchFiles = Math.max(1, batchFiles);
+    }
+
+    public static CopyEngine fromConfig(Configuration config) {
+        return new CopyEngine(
+                config.getInt("server.copy.parallelism", Math.min(4, Runtime.getRuntime().availableProcessors())),
+                config.getLong("server.copy.large_file_kb", 4096) * 1024,
+                config.getLong("server.copy.batch_kb", 8192) * 1024,
+                config.getInt("server.copy.batch_files", 256)
+        );
+    }
+
+    public interface ProgressListener {
+        void onProgress(long filesDone, long totalFiles, long bytesDone, long totalBytes, double bytesPerSecond);
+    }
+
+    public static class FileCopy {
+        private final Path source;
+        private final Path target;
+        private final long size;
+
+        public FileCopy(Path source, Path target, long size) {
+            this.source = source;
+            this.target = target;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Copies a whole directory tree. Directories are created up front, files are copied in parallel.
+     */
+    public Stats copyTree(Path source, Path target, ProgressListener listener) throws IOException {
+        final List<FileCopy> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(new FileCopy(file, target.resolve(source.relativize(file).toString()), attrs.size()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return copyFiles(files, listener);
+    }
+
+    /**
+     * Copies the given files, whose parent directories must already exist.
+     */
+    public Stats copyFiles(List<FileCopy> files, ProgressListener listener) throws IOException {
+        long totalBytes = 0;
+        List<CopyTask> tasks = new ArrayList<>();
+        List<FileCopy> batch = new ArrayList<>();
+        long batchSize = 0;
+        Progress progress = new Progress(files.size(), listener);
+
+        for (FileCopy file : files) {
+            totalBytes += file.size;
+            if (file.size >= largeFileThreshold) {
+                tasks.add(new CopyTask(progress, Collections.singletonList(file)));
+                continue;
+            }
+            batch.add(file);
+            batchSize += file.size;
+            if (batch.size() >= batchFiles || batchSize >= batchBytes) {
+                tasks.add(new CopyTask(progress, batch));
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(new CopyTask(progress, batch));
+        }
+        progress.totalBytes = totalBytes;
+
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (RuntimeException e) {
+            // ForkJoin may rewrap exceptions thrown on other workers, so search the cause chain
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+            }
+            throw e;
+        }
+
+        return new Stats(progress.filesDone.get(), progress.bytesDone.get(), progress.elapsedMillis());
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void copyFile(FileCopy file) throws IOException {
+        if (file.size < largeFileThreshold) {
+            Files.copy(file.source, file.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(file.source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(file.target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        Files.setLastModifiedTime(file.target, Files.getLastModifiedTime(file.source));
+    }
+
+    private class CopyTask extends RecursiveAction {
+        private final Progress progress;
+        private final List<FileCopy> files;
+
+        private CopyTask(Progress progress, List<FileCopy> files) {
+            this.progress = progress;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            for (FileCopy file : files) {
+                if (progress.failed.get()) {
+                    return;
+                }
+                try {
+                    copyFile(file);
+                } catch (IOException e) {
+                    progress.failed.set(true);
+                    throw new UncheckedIOException("Failed to copy " + file.source + " to " + file.target, e);
+                }
+                progress.fileCopied(file.size);
+            }
+        }
+    }
+
+    private static class Progress {
+        private final long totalFiles;
+        private final ProgressListener listener;
+        private final long startedAt = System.nanoTime();
+        private final AtomicLong filesDone = new AtomicLong();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private volatile long totalBytes;
+
+        private Progress(long totalFiles, ProgressListener listener) {
+            this.totalFiles = totalFiles;
+            this.listener = listener;
+        }
+
+        private void fileCopied(long size) {
+            long files = filesDone.incrementAndGet();
+            long bytes = bytesDone.addAndGet(size);
+            if (listener != null) {
+                listener.onProgress(files, totalFiles, bytes, totalBytes, bytesPerSecond(bytes, elapsedMillis()));
+            }
+        }
+
+        private long elapsedMillis() {
+            return (System.nanoTime() - startedAt) / 1_000_000;
+        }
+    }
+
+    private static double bytesPerSecond(long bytes, long elapsedMillis) {
+        return elapsedMillis == 0 ? bytes * 1000.0 : bytes * 1000.0 / elapsedMillis;
+    }
+
+    public static class Stats {
+        private final long files;
+        private final long bytes;
+        private final long elapsedMillis;
+
+        public Stats(long files, long bytes, long elapsedMillis) {
+            this.files = files;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getBytesPerSecond() {
+            return bytesPerSecond(bytes, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return files + " files, " + (bytes / 1024) + " KB in " + elapsedMillis + "ms ("
+                    + String.format("%.1f", getBytesPerSecond() / (1024 * 1024)) + " MB/s)";
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.config.Configuration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides what happens after a server process exits on its own. Crashed servers that were still in
+ * use are restarted after an exponentially growing delay, and all restarts on the host share one
+ * rate limit so a broken template can't reboot hundreds of servers at the same moment.
+ */
+public class CrashRecovery {
+    public enum ExitReason {
+        /** The proxy asked the server to stop, or it exited with code 0. */
+        CLEAN,
+        /** The server exited with an error. */
+        CRASH,
+        /** The kernel killed the server for running out of memory. */
+        OOM_KILLED
+    }
+
+    /**
+     * Receives every automatic restart; the signature matches PlayerStatistics#recordRestart.
+     */
+    public interface RestartListener {
+        void onRestart(UUID owner, String reason);
+    }
+
+    private final PlayerServerManager plugin;
+    private final boolean enabled;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final long stableAfterMillis;
+    private final long activeWindowMillis;
+    private final double restartsPerMinute;
+    private final double burst;
+    private final Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<StartResult>> pendingRestarts = new ConcurrentHashMap<>();
+    private final List<RestartListener> listeners = new CopyOnWriteArrayList<>();
+    private double tokens;
+    private long lastRefill = System.currentTimeMillis();
+
+    public CrashRecovery(PlayerServerManager plugin, Configuration config) {
+        this.plugin = plugin;
+        this.enabled = config.getBoolean("server.auto_restart.enabled", true);
+        this.initialBackoffMillis = TimeUnit.SECONDS.toMillis(config.getLong("server.auto_restart.initial_backoff_seconds", 5));
+        this.maxBackoffMillis = TimeUnit.SECONDS.toMillis(config.getLong("server.auto_restart.max_backoff_seconds", 300));
+        this.maxAttempts = config.getInt("server.auto_restart.max_attempts", 5);
+        this.stableAfterMillis = TimeUnit.SECONDS.toMillis(config.getLong("server.auto_restart.stable_after_seconds", 600));
+        this.activeWindowMillis = TimeUnit.SECONDS.toMillis(config.getLong("server.auto_restart.active_window_seconds", 120));
+        this.restartsPerMinute = Math.max(1, config.getDouble("server.auto_restart.host_restarts_per_minute", 10));
+        this.burst = Math.max(1, config.getDouble("server.auto_restart.host_burst", restartsPerMinute));
+        this.tokens = burst;
+    }
+
+    public void addListener(RestartListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * The outcome of a restart scheduled after the server's last crash, or null if none is pending.
+     */
+    public CompletableFuture<StartResult> getPendingRestart(PlayerServer server) {
+        return pendingRestarts.get(server.getId());
+    }
+
+    /**
+     * Classifies an exit. A stop requested by the proxy is always clean; otherwise an OOM kill is
+     * recognised from the cgroup's oom_kill counter, or from exit code 137 (SIGKILL) when the server
+     * runs without a cgroup.
+     */
+    public static ExitReason classify(int exitCode, boolean stopRequested, long oomKills) {
+        if (stopRequested || exitCode == 0) {
+            return ExitReason.CLEAN;
+        }
+        if (oomKills > 0 || exitCode == 137) {
+            return ExitReason.OOM_KILLED;
+        }
+        return ExitReason.CRASH;
+    }
+
+    /**
+     * Handles an exit of a local server and schedules a restart when it crashed while still in use.
+     */
+    public void onExit(PlayerServer server, ExitReason reason, int exitCode, long uptimeMillis) {
+        if (reason == ExitReason.CLEAN) {
+            attempts.remove(server.getId());
+            return;
+        }
+        plugin.getLogger().warning("Server " + server.getServerName() + " exited unexpectedly: " + reason + " (exit code " + exitCode
+                + ", up " + TimeUnit.MILLISECONDS.toSeconds(uptimeMillis) + "s)");
+        if (!enabled) {
+            return;
+        }
+        if (!isInUse(server)) {
+            plugin.getLogger().info("Not restarting " + server.getServerName() + ", nobody is using it");
+            attempts.remove(server.getId());
+            return;
+        }
+
+        // A server that ran for a while before crashing starts over with the shortest delay
+        Integer previous = attempts.get(server.getId());
+        int attempt = previous == null || uptimeMillis >= stableAfterMillis ? 1 : previous + 1;
+        if (attempt > maxAttempts) {
+            plugin.getLogger().severe("Server " + server.getServerName() + " crashed " + maxAttempts + " times in a row, giving up on restarting it");
+            attempts.remove(server.getId());
+            return;
+        }
+        attempts.put(server.getId(), attempt);
+
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long delay = backoff + reserveRestartSlot();
+        plugin.getLogger().info("Restarting " + server.getServerName() + " in " + TimeUnit.MILLISECONDS.toSeconds(delay) + "s (attempt " + attempt + " of " + maxAttempts + ")");
+        CompletableFuture<StartResult> restarted = new CompletableFuture<>();
+        pendingRestarts.put(server.getId(), restarted);
+        restarted.whenComplete((result, error) -> pendingRestarts.remove(server.getId(), restarted));
+        plugin.getProxy().getScheduler().schedule(plugin, () -> restart(server, reason, restarted), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void restart(PlayerServer server, ExitReason reason, CompletableFuture<StartResult> restarted) {
+        // Someone may have started, stopped or deleted it in the meantime
+        if (server.isRunning() || !plugin.getPlayerServers().containsValue(server)) {
+            restarted.complete(server.isRunning() ? StartResult.alreadyRunning() : StartResult.failed(0, "Server was deleted"));
+            return;
+        }
+        for (RestartListener listener : listeners) {
+            try {
+                listener.onRestart(server.getPlayerUuid(), reason.name());
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Restart listener failed for " + server.getServerName() + ": " + e);
+            }
+        }
+        plugin.getServerManager().startServer(server).whenComplete((result, error) -> {
+            if (error != null) {
+                restarted.completeExceptionally(error);
+                return;
+            }
+            if (result.isSuccess()) {
+                plugin.getLogger().info("Server " + server.getServerName() + " is back up after a " + reason);
+            }
+            restarted.complete(result);
+        });
+    }
+
+    /**
+     * A crashed server is worth restarting if players were on it, are waiting to be sent to it, or
+     * joined it recently.
+     */
+    private boolean isInUse(PlayerServer server) {
+        ServerInfo info = plugin.getProxy().getServerInfo(server.getServerName());
+        if (info != null && !info.getPlayers().isEmpty()) {
+            return true;
+        }
+        StartOnConnectListener startOnConnect = plugin.getStartOnConnect();
+        if (startOnConnect != null && startOnConnect.hasWaiters(server)) {
+            return true;
+        }
+        return System.currentTimeMillis() - server.getLastActive() <= activeWindowMillis;
+    }
+
+    /**
+     * Takes one token from the host-wide bucket and returns how long the restart has to wait for it.
+     * The bucket may go negative, which queues later restarts behind earlier ones.
+     */
+    private synchronized long reserveRestartSlot() {
+        long now = System.currentTimeMillis();
+        double millisPerToken = 60_000.0 / restartsPerMinute;
+        tokens = Math.min(burst, tokens + (now - lastRefill) / millisPerToken);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens * millisPerToken);
+    }
+
+    /**
+     * Consecutive crash count of a server, or 0 if it is not crash looping.
+     */
+    public int getAttempts(PlayerServer server) {
+        return attempts.getOrDefault(server.getId(), 0);
+    }
+}
@@ -0,0 +1,218 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Deletes directories in two steps: the directory is renamed into a trash directory, which is atomic
+ * and returns immediately, and a background thread deletes it from there at a limited rate so a
+ * multi-GB world doesn't starve running servers of disk I/O. Anything left in the trash by a crash
+ * or restart is deleted again by {@link #recover()}.
+ */
+public class DirectoryReaper {
+    private final PlayerServerManager plugin;
+    private final Path trashDir;
+    private final int filesPerSecond;
+    private final int maxAttempts;
+    private final long retryDelaySeconds;
+    private final ScheduledExecutorService executor;
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong reapedDirectories = new AtomicLong();
+    private final AtomicLong deletedFiles = new AtomicLong();
+    private final AtomicLong deletedBytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private long windowStart;
+    private int windowDeletes;
+
+    public DirectoryReaper(PlayerServerManager plugin, Configuration config, Path trashDir) {
+        this.plugin = plugin;
+        this.trashDir = trashDir;
+        this.filesPerSecond = config.getInt("server.reaper.files_per_second", 2000);
+        this.maxAttempts = Math.max(1, config.getInt("server.reaper.max_attempts", 5));
+        this.retryDelaySeconds = config.getLong("server.reaper.retry_delay_seconds", 30);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayerServer-Reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Moves a directory out of the way and deletes it in the background. If it can't be renamed into
+     * the trash, typically because it is on another file system, it is deleted on the calling thread.
+     */
+    public void trash(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.createDirectories(trashDir);
+        Path target = trashDir.resolve(directory.getFileName() + "." + System.currentTimeMillis());
+        for (int i = 1; Files.exists(target); i++) {
+            target = trashDir.resolve(directory.getFileName() + "." + System.currentTimeMillis() + "-" + i);
+        }
+
+        try {
+            Files.move(directory, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not move " + directory + " to the trash, deleting it in place: " + e.getMessage());
+            deleteTree(directory, false);
+            return;
+        }
+        schedule(target, 1, 0);
+    }
+
+    /**
+     * Queues whatever an earlier run left in the trash. Call once at startup.
+     */
+    public void recover() {
+        if (!Files.isDirectory(trashDir)) {
+            return;
+        }
+        int recovered = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(trashDir)) {
+            for (Path entry : entries) {
+                schedule(entry, 1, 0);
+                recovered++;
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to scan trash directory " + trashDir, e);
+        }
+        if (recovered > 0) {
+            plugin.getLogger().info("Resuming deletion of " + recovered + " directories left in " + trashDir);
+        }
+    }
+
+    private void schedule(Path entry, int attempt, long delaySeconds) {
+        if (attempt == 1 && !pending.add(entry)) {
+            return;
+        }
+        executor.schedule(() -> reap(entry, attempt), delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private void reap(Path entry, int attempt) {
+        long startedAt = System.currentTimeMillis();
+        long filesBefore = deletedFiles.get();
+        long bytesBefore = deletedBytes.get();
+        try {
+            deleteTree(entry, true);
+            pending.remove(entry);
+            reapedDirectories.incrementAndGet();
+            plugin.getLogger().info(String.format("Deleted %s: %d files, %d MB in %dms",
+                    entry.getFileName(), deletedFiles.get() - filesBefore, (deletedBytes.get() - bytesBefore) >> 20,
+                    System.currentTimeMillis() - startedAt));
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            if (attempt < maxAttempts) {
+                // Usually a file still held open by a process that is shutting down
+                plugin.getLogger().warning("Failed to delete " + entry + " (attempt " + attempt + " of " + maxAttempts + "): " + e.getMessage());
+                schedule(entry, attempt + 1, retryDelaySeconds * attempt);
+            } else {
+                pending.remove(entry);
+                plugin.getLogger().log(Level.SEVERE, "Giving up deleting " + entry + "; it stays in the trash until the next restart", e);
+            }
+        }
+    }
+
+    private void deleteTree(Path root, boolean throttle) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (throttle) {
+                    throttle();
+                }
+                delete(file);
+                deletedFiles.incrementAndGet();
+                deletedBytes.addAndGet(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void delete(Path path) throws IOException {
+        try {
+            Files.delete(path);
+        } catch (NoSuchFileException e) {
+            // Already gone, e.g. deleted by an earlier attempt
+        }
+    }
+
+    /**
+     * Keeps deletions under files_per_second. Only the reaper thread calls this.
+     */
+    private void throttle() {
+        if (filesPerSecond <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= 1000) {
+            windowStart = now;
+            windowDeletes = 0;
+        }
+        if (++windowDeletes > filesPerSecond) {
+            try {
+                Thread.sleep(Math.max(0, windowStart + 1000 - now));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            windowStart = System.currentTimeMillis();
+            windowDeletes = 1;
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getReapedDirectories() {
+        return reapedDirectories.get();
+    }
+
+    public long getDeletedFiles() {
+        return deletedFiles.get();
+    }
+
+    public long getDeletedBytes() {
+        return deletedBytes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
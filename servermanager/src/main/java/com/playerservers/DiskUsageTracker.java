@@ -0,0 +1,412 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.ComponentBuilder;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.config.Configuration;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keeps the disk usage of every local server current without walking its tree on each check. Each
+ * server is scanned once; after that a WatchService marks the directories whose entries changed and
+ * a periodic flush re-lists only those directories. One server per flush is fully rescanned once its
+ * last scan is older than server.disk_quota.reconcile_minutes, which corrects anything the watcher
+ * missed, including servers that could not be watched at all.
+ *
+ * Files with more than one link are shared with the template or the jar and plugin stores, so they
+ * are not charged to the server.
+ */
+public class DiskUsageTracker {
+    /**
+     * Receives the disk usage of a server whenever it changes, keyed by the owner's UUID.
+     */
+    public interface DiskUsageListener {
+        void onDiskUsage(UUID owner, long bytes);
+    }
+
+    private final PlayerServerManager plugin;
+    private final ServerManager serverManager;
+    private final boolean enabled;
+    private final int warnPercent;
+    private final long reconcileMillis;
+    private final Map<Integer, Tracked> tracked = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Tracked> keys = new ConcurrentHashMap<>();
+    private final List<DiskUsageListener> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watcher;
+    private ScheduledTask task;
+
+    public DiskUsageTracker(PlayerServerManager plugin, ServerManager serverManager, Configuration config) {
+        this.plugin = plugin;
+        this.serverManager = serverManager;
+        this.enabled = config.getBoolean("server.disk_quota.enabled", true);
+        this.warnPercent = config.getInt("server.disk_quota.warn_percent", 90);
+        this.reconcileMillis = TimeUnit.MINUTES.toMillis(config.getLong("server.disk_quota.reconcile_minutes", 60));
+    }
+
+    public void start(long flushSeconds) {
+        if (!enabled || flushSeconds <= 0) {
+            return;
+        }
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(this::watch, "PlayerServer-DiskWatcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "File watching unavailable, disk usage is only updated by periodic scans", e);
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::flush, 0, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    public void addListener(DiskUsageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Bytes charged to the server, or -1 if it has not been scanned yet.
+     */
+    public long getUsageBytes(PlayerServer server) {
+        Tracked entry = tracked.get(server.getId());
+        return entry == null || entry.lastScan == 0 ? -1 : entry.total;
+    }
+
+    /**
+     * Whether the server uses more than quotaMB. Servers that have not been scanned yet and quotas
+     * of zero or less never count as over quota.
+     */
+    public boolean isOverQuota(PlayerServer server, long quotaMB) {
+        return quotaMB > 0 && getUsageBytes(server) > quotaMB << 20;
+    }
+
+    /**
+     * Runs on the watcher thread: records which directories changed and starts watching new ones.
+     */
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Tracked entry = keys.get(key);
+            if (entry == null) {
+                key.cancel();
+                continue;
+            }
+            Path dir = (Path) key.watchable();
+            entry.dirty.add(dir);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    entry.lastScan = -1;
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    Path child = dir.resolve((Path) event.context());
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        registerTree(entry, child);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // The directory itself is gone; the flush drops it
+                keys.remove(key);
+                entry.watchKeys.remove(dir);
+            }
+        }
+    }
+
+    /**
+     * Runs on the scheduler: picks up new and removed servers, re-lists changed directories,
+     * reconciles at most one server and enforces quotas.
+     */
+    private void flush() {
+        Map<Integer, PlayerServer> current = new HashMap<>();
+        for (PlayerServer server : plugin.getPlayerServers().values()) {
+            if (serverManager.getNodes().isRemote(server)) {
+                continue;
+            }
+            current.put(server.getId(), server);
+            // A server running on a warm spare keeps its files in the spare's slot meanwhile
+            Path root = Paths.get(serverManager.getServerDirectory(server));
+            Tracked entry = tracked.get(server.getId());
+            if (entry != null && !entry.root.equals(root)) {
+                untrack(entry);
+            }
+            tracked.computeIfAbsent(server.getId(), id -> new Tracked(server, root));
+        }
+        for (Tracked entry : new ArrayList<>(tracked.values())) {
+            if (!current.containsKey(entry.server.getId())) {
+                untrack(entry);
+            }
+        }
+
+        Tracked stalest = null;
+        for (Tracked entry : tracked.values()) {
+            if (entry.lastScan <= 0) {
+                // Never scanned, or the watcher lost events
+                rescan(entry);
+            } else {
+                relistDirty(entry);
+                if (stalest == null || entry.lastScan < stalest.lastScan) {
+                    stalest = entry;
+                }
+            }
+        }
+        if (stalest != null && System.currentTimeMillis() - stalest.lastScan >= reconcileMillis) {
+            rescan(stalest);
+        }
+
+        for (Tracked entry : tracked.values()) {
+            if (entry.lastScan > 0 && entry.total != entry.published) {
+                entry.published = entry.total;
+                for (DiskUsageListener listener : listeners) {
+                    listener.onDiskUsage(entry.server.getPlayerUuid(), entry.total);
+                }
+                checkQuota(entry);
+            }
+        }
+    }
+
+    private void relistDirty(Tracked entry) {
+        if (entry.dirty.isEmpty()) {
+            return;
+        }
+        List<Path> dirs = new ArrayList<>(entry.dirty);
+        entry.dirty.removeAll(dirs);
+        for (Path dir : dirs) {
+            long size = sizeOf(dir);
+            if (size < 0) {
+                dropTree(entry, dir);
+                continue;
+            }
+            Long previous = entry.dirSizes.put(dir, size);
+            entry.total += size - (previous == null ? 0 : previous);
+
+            // Subdirectories moved or deleted as a whole report nothing themselves
+            for (Path child : new ArrayList<>(entry.dirSizes.keySet())) {
+                if (dir.equals(child.getParent()) && !Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    dropTree(entry, child);
+                }
+            }
+        }
+    }
+
+    private void dropTree(Tracked entry, Path dir) {
+        for (Path path : new ArrayList<>(entry.dirSizes.keySet())) {
+            if (path.startsWith(dir)) {
+                entry.total -= entry.dirSizes.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Walks the whole server directory, which also registers directories the watcher missed.
+     */
+    private void rescan(Tracked entry) {
+        Map<Path, Long> sizes = new HashMap<>();
+        if (Files.isDirectory(entry.root)) {
+            try {
+                Files.walkFileTree(entry.root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        sizes.put(dir, 0L);
+                        register(entry, dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        sizes.merge(file.getParent(), chargedSize(file, attrs), Long::sum);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to scan disk usage of " + entry.server.getServerName(), e);
+                return;
+            }
+        }
+        entry.dirty.clear();
+        entry.dirSizes.clear();
+        entry.dirSizes.putAll(sizes);
+        long total = 0;
+        for (long size : sizes.values()) {
+            total += size;
+        }
+        entry.total = total;
+        entry.lastScan = System.currentTimeMillis();
+    }
+
+    private void registerTree(Tracked entry, Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    register(entry, dir);
+                    entry.dirty.add(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // Removed again before we got to it
+        }
+    }
+
+    private void register(Tracked entry, Path dir) {
+        if (watcher == null || entry.watchKeys.containsKey(dir)) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            entry.watchKeys.put(dir, key);
+            keys.put(key, entry);
+        } catch (IOException e) {
+            // Typically the inotify watch limit; the periodic rescan still covers this directory
+            if (!entry.watchFailed) {
+                entry.watchFailed = true;
+                plugin.getLogger().warning("Could not watch " + dir + ", relying on periodic scans: " + e.getMessage());
+            }
+        }
+    }
+
+    private void untrack(Tracked entry) {
+        tracked.remove(entry.server.getId());
+        for (WatchKey key : entry.watchKeys.values()) {
+            keys.remove(key);
+            key.cancel();
+        }
+        entry.watchKeys.clear();
+    }
+
+    /**
+     * Sum of the files directly inside dir, or -1 if the directory no longer exists.
+     */
+    private static long sizeOf(Path dir) {
+        long size = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path path : entries) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isRegularFile()) {
+                        size += chargedSize(path, attrs);
+                    }
+                } catch (IOException e) {
+                    // Deleted while listing
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return -1;
+        } catch (IOException e) {
+            return 0;
+        }
+        return size;
+    }
+
+    private static long chargedSize(Path file, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile()) {
+            return 0;
+        }
+        try {
+            Object links = Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+            if (links instanceof Integer && (Integer) links > 1) {
+                return 0;
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            // No link counts on this file system; charge the file
+        }
+        return attrs.size();
+    }
+
+    private void checkQuota(Tracked entry) {
+        long quotaMB = ResourceLimits.forServer(plugin.getConfig(), entry.server).getStorageMB();
+        if (quotaMB <= 0) {
+            return;
+        }
+        long usedMB = entry.total >> 20;
+        int level = usedMB > quotaMB ? 2 : usedMB * 100 >= quotaMB * warnPercent ? 1 : 0;
+        if (level <= entry.warnedLevel) {
+            entry.warnedLevel = level;
+            return;
+        }
+        entry.warnedLevel = level;
+
+        ProxiedPlayer owner = plugin.getProxy().getPlayer(entry.server.getPlayerUuid());
+        if (level == 2) {
+            plugin.getLogger().warning("Server " + entry.server.getServerName() + " is over its storage quota: " + usedMB + " / " + quotaMB + " MB");
+            if (owner != null) {
+                owner.sendMessage(new ComponentBuilder("Your server uses " + usedMB + " MB of its " + quotaMB
+                        + " MB storage and can't be started again until you free some space.").color(ChatColor.RED).create());
+            }
+        } else if (owner != null) {
+            owner.sendMessage(new ComponentBuilder("Your server uses " + usedMB + " MB of its " + quotaMB + " MB storage.").color(ChatColor.YELLOW).create());
+        }
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+        }
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to close disk usage watcher", e);
+            }
+        }
+    }
+
+    private static class Tracked {
+        private final PlayerServer server;
+        private final Path root;
+        private final Map<Path, Long> dirSizes = new HashMap<>();
+        private final Map<Path, WatchKey> watchKeys = new ConcurrentHashMap<>();
+        private final Set<Path> dirty = ConcurrentHashMap.newKeySet();
+        private volatile long total;
+        private volatile long lastScan;
+        private long published = -1;
+        private int warnedLevel;
+        private boolean watchFailed;
+
+        private Tracked(PlayerServer server, Path root) {
+            this.server = server;
+            this.root = root;
+        }
+    }
+}
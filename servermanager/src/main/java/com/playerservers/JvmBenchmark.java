@@ -0,0 +1,218 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.ComponentBuilder;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.config.Configuration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Boots the template under every JVM profile and reports how long startup took with and without a
+ * class data sharing archive, and the TPS after a warm-up period, so profile defaults can be chosen
+ * from measurements. Benchmarks run one profile at a time outside the admission controller, so they
+ * are best run on a quiet host.
+ */
+public class JvmBenchmark {
+    private static final String READY_MARKER = "Done (";
+    private static final Pattern TPS_PATTERN = Pattern.compile("TPS from last[^:]*:\\s*\\*?([0-9.]+)");
+    private static final Pattern COLOR_CODES = Pattern.compile("\u00a7.");
+
+    private final PlayerServerManager plugin;
+    private final int heapMB;
+    private final long startTimeoutSeconds;
+    private final long warmupSeconds;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile String lastTps = "unknown";
+
+    public JvmBenchmark(PlayerServerManager plugin, Configuration config) {
+        this.plugin = plugin;
+        this.heapMB = config.getInt("server.jvm.benchmark.heap_mb", 2048);
+        this.startTimeoutSeconds = config.getLong("server.start_timeout_seconds", 120);
+        this.warmupSeconds = config.getLong("server.jvm.benchmark.warmup_seconds", 60);
+    }
+
+    /**
+     * Runs the benchmark in the background and reports each profile's results to the player.
+     * Returns false if a benchmark is already running.
+     */
+    public boolean start(ProxiedPlayer player) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
+            try {
+                for (JvmProfile profile : plugin.getServerManager().getJvmProfiles()) {
+                    player.sendMessage(new ComponentBuilder("Benchmarking JVM profile " + profile + "...").color(ChatColor.YELLOW).create());
+                    String result = run(player, profile);
+                    plugin.getLogger().info("JVM benchmark " + profile + ": " + result);
+                    player.sendMessage(new ComponentBuilder(profile.getName()).color(ChatColor.YELLOW).append(" - " + result).color(ChatColor.WHITE).create());
+                }
+                player.sendMessage(new ComponentBuilder("JVM benchmark finished.").color(ChatColor.GREEN).create());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    private String run(ProxiedPlayer player, JvmProfile profile) {
+        ServerManager serverManager = plugin.getServerManager();
+        int port = plugin.getPortAllocator().allocate(player.getUniqueId());
+        if (port == -1) {
+            return "no free port";
+        }
+
+        File dir = null;
+        lastTps = "unknown";
+        try {
+            dir = serverManager.prepareScratchDirectory("benchmark-" + profile.getName());
+            File archive = new File(dir, "benchmark.jsa");
+            List<String> command = serverManager.buildCommand(profile, heapMB, port);
+
+            // The first boot generates the world, so it only records the archive; the two boots
+            // after it differ in nothing but class data sharing
+            if (boot(dir, withOption(command, "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath()), profile, false) < 0) {
+                return "did not start within " + startTimeoutSeconds + "s";
+            }
+            long plainMillis = boot(dir, command, profile, false);
+            long sharedMillis = archive.isFile()
+                    ? boot(dir, withOption(command, "-XX:SharedArchiveFile=" + archive.getAbsolutePath()), profile, true)
+                    : -1;
+
+            return String.format("startup %s without CDS, %s with CDS, TPS %s after %ds",
+                    seconds(plainMillis), seconds(sharedMillis), lastTps, warmupSeconds);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "JVM benchmark of profile " + profile + " failed", e);
+            return "failed: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        } finally {
+            plugin.getPortAllocator().release(port);
+            if (dir != null) {
+                try {
+                    serverManager.removeScratchDirectory(dir);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to remove benchmark directory " + dir, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Boots the scratch server once and returns its startup time in milliseconds, or -1 if it did
+     * not become ready. With measureTps the server also runs through the warm-up before stopping.
+     */
+    private long boot(File dir, List<String> command, JvmProfile profile, boolean measureTps) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(dir);
+        pb.redirectErrorStream(true);
+
+        Process process = null;
+        try {
+            long startedAt = System.currentTimeMillis();
+            process = pb.start();
+            BlockingQueue<String> lines = readLines(process, profile);
+
+            if (awaitLine(lines, READY_MARKER, startTimeoutSeconds) == null) {
+                return -1;
+            }
+            long startupMillis = System.currentTimeMillis() - startedAt;
+
+            if (measureTps) {
+                // Let JIT and world loading settle before measuring the tick rate
+                Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+                lines.clear();
+                sendCommand(process, "tps");
+                String tpsLine = awaitLine(lines, "TPS from last", 10);
+                Matcher matcher = tpsLine == null ? null : TPS_PATTERN.matcher(COLOR_CODES.matcher(tpsLine).replaceAll(""));
+                lastTps = matcher != null && matcher.find() ? matcher.group(1) : "unknown";
+            }
+            return startupMillis;
+        } finally {
+            // Stopping cleanly is also what makes the JVM write a recorded archive
+            stop(process);
+        }
+    }
+
+    private static List<String> withOption(List<String> command, String option) {
+        List<String> result = new ArrayList<>(command);
+        result.add(1, option);
+        return result;
+    }
+
+    private static String seconds(long millis) {
+        return millis < 0 ? "n/a" : String.format("%.1fs", millis / 1000.0);
+    }
+
+    private BlockingQueue<String> readLines(Process process, JvmProfile profile) {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines.offer(line);
+                }
+            } catch (IOException e) {
+                // The process went away
+            }
+        }, "PlayerServers-Benchmark-" + profile.getName());
+        reader.setDaemon(true);
+        reader.start();
+        return lines;
+    }
+
+    private String awaitLine(BlockingQueue<String> lines, String marker, long timeoutSeconds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+            String line = lines.poll(remaining, TimeUnit.MILLISECONDS);
+            if (line != null && line.contains(marker)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private void sendCommand(Process process, String command) throws IOException {
+        OutputStream stdin = process.getOutputStream();
+        stdin.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+        stdin.flush();
+    }
+
+    private void stop(Process process) {
+        if (process == null || !process.isAlive()) {
+            return;
+        }
+        try {
+            sendCommand(process, "stop");
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+            }
+        } catch (IOException e) {
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+}
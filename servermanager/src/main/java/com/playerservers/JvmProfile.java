@@ -0,0 +1,162 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of JVM options for one range of heap sizes: garbage collector, extra tuning flags, heap
+ * pre-touching and an optional AppCDS archive. Profiles are configured under server.jvm.profiles,
+ * or per template under server.jvm.templates.<template>, and tried in the order they are listed.
+ */
+public class JvmProfile {
+    private static final List<String> G1_FLAGS = Arrays.asList(
+            "-XX:+ParallelRefProcEnabled",
+            "-XX:MaxGCPauseMillis=200",
+            "-XX:+UnlockExperimentalVMOptions",
+            "-XX:+DisableExplicitGC",
+            "-XX:G1NewSizePercent=30",
+            "-XX:G1MaxNewSizePercent=40",
+            "-XX:G1HeapRegionSize=8M",
+            "-XX:G1ReservePercent=20",
+            "-XX:G1HeapWastePercent=5",
+            "-XX:G1MixedGCCountTarget=4",
+            "-XX:InitiatingHeapOccupancyPercent=15",
+            "-XX:G1MixedGCLiveThresholdPercent=90",
+            "-XX:G1RSetUpdatingPauseTimePercent=5",
+            "-XX:SurvivorRatio=32",
+            "-XX:+PerfDisableSharedMem",
+            "-XX:MaxTenuringThreshold=1"
+    );
+
+    private final String name;
+    private final String gc;
+    private final int minHeapMB;
+    private final int maxHeapMB;
+    private final boolean alwaysPreTouch;
+    private final String cdsArchive;
+    private final List<String> flags;
+
+    public JvmProfile(String name, String gc, int minHeapMB, int maxHeapMB, boolean alwaysPreTouch, String cdsArchive, List<String> flags) {
+        this.name = name;
+        this.gc = gc;
+        this.minHeapMB = minHeapMB;
+        this.maxHeapMB = maxHeapMB;
+        this.alwaysPreTouch = alwaysPreTouch;
+        this.cdsArchive = cdsArchive;
+        this.flags = Collections.unmodifiableList(new ArrayList<>(flags));
+    }
+
+    /**
+     * Loads the profiles of a template, falling back to the shared profiles and then to built-in
+     * Parallel, G1 and ZGC profiles when nothing is configured.
+     */
+    public static List<JvmProfile> load(Configuration config, String templateName) {
+        Configuration section = config.getSection("server.jvm.templates." + templateName);
+        if (section.getKeys().isEmpty()) {
+            section = config.getSection("server.jvm.profiles");
+        }
+
+        List<JvmProfile> profiles = new ArrayList<>();
+        for (String name : section.getKeys()) {
+            Configuration profile = section.getSection(name);
+            profiles.add(new JvmProfile(
+                    name,
+                    profile.getString("gc", "G1"),
+                    profile.getInt("min_heap_mb", 0),
+                    profile.getInt("max_heap_mb", Integer.MAX_VALUE),
+                    profile.getBoolean("always_pre_touch", false),
+                    profile.getString("cds_archive", ""),
+                    profile.getStringList("flags")
+            ));
+        }
+        return profiles.isEmpty() ? defaults() : profiles;
+    }
+
+    public static List<JvmProfile> defaults() {
+        return Arrays.asList(
+                new JvmProfile("compact", "Parallel", 0, 1536, false, "", Collections.emptyList()),
+                new JvmProfile("g1", "G1", 1536, 12288, true, "", G1_FLAGS),
+                new JvmProfile("zgc", "ZGC", 12288, Integer.MAX_VALUE, true, "", Collections.emptyList())
+        );
+    }
+
+    /**
+     * Picks the profile for a server. Its heap is scaled down to the memory it has actually needed,
+     * plus headroom, so a server that never fills a large heap is not given a large-heap collector
+     * that pre-touches memory it will never use.
+     */
+    public static JvmProfile select(List<JvmProfile> profiles, int heapMB, long peakMemoryMB, int headroomPercent) {
+        long effectiveMB = heapMB;
+        if (peakMemoryMB > 0) {
+            effectiveMB = Math.min(heapMB, peakMemoryMB * (100 + headroomPercent) / 100);
+        }
+        for (JvmProfile profile : profiles) {
+            if (effectiveMB >= profile.minHeapMB && effectiveMB < profile.maxHeapMB) {
+                return profile;
+            }
+        }
+        return profiles.get(profiles.size() - 1);
+    }
+
+    /**
+     * Appends the heap size and this profile's options to a java command line.
+     */
+    public void appendArguments(List<String> arguments, int heapMB) {
+        arguments.add("-Xmx" + heapMB + "M");
+        // Pre-touching only pays off when the whole heap is committed up front
+        arguments.add("-Xms" + (alwaysPreTouch ? heapMB : heapMB / 2) + "M");
+
+        switch (gc.toUpperCase()) {
+            case "ZGC":
+                arguments.add("-XX:+UseZGC");
+                break;
+            case "PARALLEL":
+                arguments.add("-XX:+UseParallelGC");
+                break;
+            case "SERIAL":
+                arguments.add("-XX:+UseSerialGC");
+                break;
+            default:
+                arguments.add("-XX:+UseG1GC");
+                break;
+        }
+        if (alwaysPreTouch) {
+            arguments.add("-XX:+AlwaysPreTouch");
+        }
+        if (!cdsArchive.isEmpty()) {
+            // With -Xshare:auto a missing or stale archive only costs the speed-up
+            arguments.add("-XX:SharedArchiveFile=" + cdsArchive);
+            arguments.add("-Xshare:auto");
+        }
+        arguments.addAll(flags);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getGc() {
+        return gc;
+    }
+
+    public boolean isAlwaysPreTouch() {
+        return alwaysPreTouch;
+    }
+
+    public String getCdsArchive() {
+        return cdsArchive;
+    }
+
+    public List<String> getFlags() {
+        return flags;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + gc + ")";
+    }
+}
@@ -0,0 +1,465 @@
+package com.playerservers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Worker agent that runs player servers on a node other than the proxy host. The proxy connects
+ * over TCP and sends one command per line; every command gets a single {@code OK ...} or
+ * {@code ERR ...} line back (TAIL follows its OK line with the requested console lines).
+ *
+ * <pre>
+ * AUTH &lt;token&gt;
+ * CAPACITY                                   -&gt; OK &lt;budget mb&gt; &lt;committed mb&gt; &lt;running&gt;
+ * CREATE &lt;name&gt;
+ * PUT &lt;name&gt; &lt;path&gt; &lt;only if absent 0|1&gt; &lt;base64 content&gt;
+ * REMOVE &lt;name&gt; &lt;path&gt;
+ * START &lt;name&gt; &lt;committed mb&gt; &lt;heap mb&gt; &lt;port&gt; &lt;G1|ZGC|PARALLEL|SERIAL&gt; &lt;pre-touch 0|1&gt; [&lt;-XX flag&gt;...]
+ * STOP &lt;name&gt; &lt;grace seconds&gt;             -&gt; OK &lt;STOPPED|TERMINATED|KILLED|ALREADY_STOPPED&gt; &lt;exit code&gt;
+ * SIGNAL &lt;name&gt; STOP|CONT
+ * STATUS &lt;name&gt;                              -&gt; OK RUNNING|STOPPED
+ * LIST                                       -&gt; OK &lt;running names...&gt;
+ * TAIL &lt;name&gt; &lt;lines&gt;                        -&gt; OK &lt;count&gt;, then count lines
+ * DELETE &lt;name&gt;
+ * </pre>
+ *
+ * The agent builds the java command for START itself and only accepts -XX flags with numeric
+ * values, so a connection can choose a server's heap and collector but never what is executed.
+ * Memory is counted as committed memory, the heap plus JVM overhead, like the proxy's admission.
+ * An agent that listens on anything but loopback requires a token.
+ *
+ * This class runs as its own JVM and must only depend on the JDK.
+ */
+public final class NodeAgent {
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+    private static final Pattern JVM_FLAG = Pattern.compile("-XX:[+-][A-Za-z0-9]+|-XX:[A-Za-z0-9]+=[0-9]+[KkMmGg%]?");
+    private static final int TAIL_LINES = 500;
+
+    private final Path serversDir;
+    private final Path templateDir;
+    private final Path serverJar;
+    private final long memoryBudgetMB;
+    private final String token;
+    private final Map<String, Child> children = new ConcurrentHashMap<>();
+
+    private NodeAgent(Path serversDir, Path templateDir, Path serverJar, long memoryBudgetMB, String token) {
+        this.serversDir = serversDir;
+        this.templateDir = templateDir;
+        this.serverJar = serverJar;
+        this.memoryBudgetMB = memoryBudgetMB;
+        this.token = token;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (!options.containsKey("dir")) {
+            System.err.println("Usage: NodeAgent --dir <data dir> [--bind 127.0.0.1] [--port 7070] [--memory-mb <budget>]"
+                    + " [--template <dir>] [--jar <server jar>] [--token <secret>]");
+            System.exit(2);
+        }
+        InetAddress bind = InetAddress.getByName(options.getOrDefault("bind", "127.0.0.1"));
+        if (!bind.isLoopbackAddress() && options.getOrDefault("token", "").isEmpty()) {
+            System.err.println("Refusing to listen on " + bind.getHostAddress() + " without --token");
+            System.exit(2);
+        }
+
+        Path dir = Paths.get(options.get("dir"));
+        NodeAgent agent = new NodeAgent(
+                dir.resolve("servers"),
+                Paths.get(options.getOrDefault("template", dir.resolve("template").toString())),
+                Paths.get(options.getOrDefault("jar", dir.resolve("paper.jar").toString())),
+                Long.parseLong(options.getOrDefault("memory-mb", "8192")),
+                options.getOrDefault("token", "")
+        );
+        Files.createDirectories(agent.serversDir);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(agent::stopAll));
+        int port = Integer.parseInt(options.getOrDefault("port", "7070"));
+        try (ServerSocket server = new ServerSocket(port, 16, bind)) {
+            System.out.println("Node agent listening on " + server.getLocalSocketAddress() + ", serving " + agent.serversDir);
+            while (true) {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> agent.serve(socket), "NodeAgent-Connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            boolean authenticated = token.isEmpty();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                List<String> reply;
+                if (!authenticated) {
+                    authenticated = parts.length == 2 && parts[0].equals("AUTH") && MessageDigest.isEqual(
+                            parts[1].getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+                    reply = Arrays.asList(authenticated ? "OK" : "ERR authentication failed");
+                } else if (parts[0].equals("AUTH")) {
+                    reply = Arrays.asList("OK");
+                } else {
+                    try {
+                        reply = handle(parts);
+                    } catch (IOException | RuntimeException e) {
+                        reply = Arrays.asList("ERR " + String.valueOf(e.getMessage()).replace('\n', ' '));
+                    }
+                }
+                for (String replyLine : reply) {
+                    out.write(replyLine);
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The proxy disconnected; it will reconnect on its next request
+        }
+    }
+
+    private List<String> handle(String[] parts) throws IOException {
+        switch (parts[0]) {
+            case "CAPACITY":
+                return Arrays.asList("OK " + memoryBudgetMB + " " + committedMemoryMB() + " " + children.size());
+            case "CREATE":
+                create(name(parts, 1));
+                return Arrays.asList("OK");
+            case "PUT":
+                put(name(parts, 1), parts[2], parts[3].equals("1"), parts.length > 4 ? Base64.getDecoder().decode(parts[4]) : new byte[0]);
+                return Arrays.asList("OK");
+            case "REMOVE":
+                Files.deleteIfExists(resolve(name(parts, 1), parts[2]));
+                return Arrays.asList("OK");
+            case "START":
+                start(name(parts, 1), Long.parseLong(parts[2]), javaCommand(parts));
+                return Arrays.asList("OK");
+            case "STOP":
+                return Arrays.asList("OK " + stop(name(parts, 1), Long.parseLong(parts[2])));
+            case "SIGNAL":
+                signal(name(parts, 1), parts[2]);
+                return Arrays.asList("OK");
+            case "STATUS":
+                return Arrays.asList("OK " + (children.containsKey(name(parts, 1)) ? "RUNNING" : "STOPPED"));
+            case "LIST":
+                return Arrays.asList(("OK " + String.join(" ", children.keySet())).trim());
+            case "TAIL":
+                return tail(name(parts, 1), Integer.parseInt(parts[2]));
+            case "DELETE":
+                delete(name(parts, 1));
+                return Arrays.asList("OK");
+            default:
+                return Arrays.asList("ERR unknown command " + parts[0]);
+        }
+    }
+
+    private void create(String name) throws IOException {
+        Path target = serversDir.resolve(name);
+        Files.createDirectories(target);
+        if (Files.isDirectory(templateDir)) {
+            Files.walkFileTree(templateDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(templateDir.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.copy(file, target.resolve(templateDir.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        Path jar = target.resolve(serverJar.getFileName().toString());
+        if (!Files.exists(jar)) {
+            if (!Files.exists(serverJar)) {
+                throw new IOException("server jar not found: " + serverJar);
+            }
+            try {
+                Files.createLink(jar, serverJar);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(serverJar, jar);
+            }
+        }
+    }
+
+    private void put(String name, String path, boolean onlyIfAbsent, byte[] content) throws IOException {
+        Path file = resolve(name, path);
+        if (file.equals(serversDir.resolve(name).resolve(serverJar.getFileName().toString()).normalize())) {
+            // START always runs this jar, so only the node's own copy may be there
+            throw new IOException("the server jar can't be replaced");
+        }
+        if (onlyIfAbsent && Files.exists(file)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private Path resolve(String name, String path) throws IOException {
+        Path serverDir = serversDir.resolve(name).normalize();
+        Path file = serverDir.resolve(path).normalize();
+        if (!file.startsWith(serverDir) || file.equals(serverDir)) {
+            throw new IOException("path outside server directory: " + path);
+        }
+        return file;
+    }
+
+    /**
+     * Builds the command that runs this node's server jar from the fields of a START request.
+     */
+    private List<String> javaCommand(String[] parts) throws IOException {
+        if (parts.length < 7) {
+            throw new IOException("usage: START <name> <committed mb> <heap mb> <port> <gc> <pre-touch> [flags]");
+        }
+        int heapMB = Integer.parseInt(parts[3]);
+        int port = Integer.parseInt(parts[4]);
+        boolean preTouch = parts[6].equals("1");
+        if (heapMB < 64 || port < 1 || port > 65535) {
+            throw new IOException("invalid heap or port");
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.add("-Xmx" + heapMB + "M");
+        command.add("-Xms" + (preTouch ? heapMB : heapMB / 2) + "M");
+        switch (parts[5].toUpperCase()) {
+            case "G1":
+                command.add("-XX:+UseG1GC");
+                break;
+            case "ZGC":
+                command.add("-XX:+UseZGC");
+                break;
+            case "PARALLEL":
+                command.add("-XX:+UseParallelGC");
+                break;
+            case "SERIAL":
+                command.add("-XX:+UseSerialGC");
+                break;
+            default:
+                throw new IOException("unsupported gc " + parts[5]);
+        }
+        if (preTouch) {
+            command.add("-XX:+AlwaysPreTouch");
+        }
+        for (int i = 7; i < parts.length; i++) {
+            // Options that take paths or commands (OnError, Flags, ...) never have numeric values
+            if (!JVM_FLAG.matcher(parts[i]).matches()) {
+                throw new IOException("unsupported jvm flag " + parts[i]);
+            }
+            command.add(parts[i]);
+        }
+        command.add("-jar");
+        command.add(serverJar.getFileName().toString());
+        command.add("--nogui");
+        command.add("--port");
+        command.add(String.valueOf(port));
+        return command;
+    }
+
+    private synchronized void start(String name, long memoryMB, List<String> command) throws IOException {
+        if (children.containsKey(name)) {
+            return;
+        }
+        if (committedMemoryMB() + memoryMB > memoryBudgetMB) {
+            throw new IOException("node at capacity");
+        }
+        Path dir = serversDir.resolve(name);
+        if (!Files.isDirectory(dir)) {
+            throw new IOException("server not found: " + name);
+        }
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(dir.toFile());
+        pb.redirectErrorStream(true);
+        Child child = new Child(pb.start(), memoryMB);
+        children.put(name, child);
+
+        Thread reader = new Thread(() -> child.pump(), "NodeAgent-Output-" + name);
+        reader.setDaemon(true);
+        reader.start();
+        child.process.onExit().thenRun(() -> children.remove(name, child));
+    }
+
+    private String stop(String name, long graceSeconds) {
+        Child child = children.get(name);
+        if (child == null) {
+            return "ALREADY_STOPPED 0";
+        }
+        try {
+            // A suspended server can't act on the stop command
+            signal(name, "CONT");
+        } catch (IOException e) {
+            // Not suspended or already gone
+        }
+
+        String status = "STOPPED";
+        try {
+            OutputStream stdin = child.process.getOutputStream();
+            stdin.write("stop\n".getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+        } catch (IOException e) {
+            graceSeconds = 0;
+        }
+        try {
+            if (!child.process.waitFor(graceSeconds, TimeUnit.SECONDS)) {
+                status = "TERMINATED";
+                child.process.destroy();
+                if (!child.process.waitFor(10, TimeUnit.SECONDS)) {
+                    status = "KILLED";
+                    child.process.destroyForcibly().waitFor();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            child.process.destroyForcibly();
+        }
+        children.remove(name, child);
+        return status + " " + (child.process.isAlive() ? -1 : child.process.exitValue());
+    }
+
+    private void signal(String name, String signal) throws IOException {
+        Child child = children.get(name);
+        if (child == null) {
+            throw new IOException("server not running: " + name);
+        }
+        if (!signal.equals("STOP") && !signal.equals("CONT")) {
+            throw new IOException("unsupported signal " + signal);
+        }
+        Process kill = new ProcessBuilder("kill", "-" + signal, String.valueOf(child.process.pid())).start();
+        try {
+            if (!kill.waitFor(5, TimeUnit.SECONDS) || kill.exitValue() != 0) {
+                throw new IOException("kill -" + signal + " failed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted");
+        }
+    }
+
+    private List<String> tail(String name, int lines) {
+        Child child = children.get(name);
+        List<String> reply = new ArrayList<>();
+        List<String> tail = child == null ? new ArrayList<>() : child.tail(lines);
+        reply.add("OK " + tail.size());
+        reply.addAll(tail);
+        return reply;
+    }
+
+    private void delete(String name) throws IOException {
+        Child child = children.remove(name);
+        if (child != null) {
+            try {
+                child.process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Path dir = serversDir.resolve(name);
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void stopAll() {
+        for (String name : new ArrayList<>(children.keySet())) {
+            stop(name, 30);
+        }
+    }
+
+    private long committedMemoryMB() {
+        long committed = 0;
+        for (Child child : children.values()) {
+            committed += child.memoryMB;
+        }
+        return committed;
+    }
+
+    private static String name(String[] parts, int index) {
+        if (parts.length <= index || !NAME.matcher(parts[index]).matches()) {
+            throw new IllegalArgumentException("invalid server name");
+        }
+        return parts[index];
+    }
+
+    private static final class Child {
+        private final Process process;
+        private final long memoryMB;
+        private final Deque<String> lines = new ArrayDeque<>();
+
+        private Child(Process process, long memoryMB) {
+            this.process = process;
+            this.memoryMB = memoryMB;
+        }
+
+        private void pump() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    synchronized (lines) {
+                        if (lines.size() == TAIL_LINES) {
+                            lines.removeFirst();
+                        }
+                        lines.addLast(line);
+                    }
+                }
+            } catch (IOException e) {
+                // The process exited
+            }
+        }
+
+        private List<String> tail(int count) {
+            synchronized (lines) {
+                List<String> all = new ArrayList<>(lines);
+                return all.subList(Math.max(0, all.size() - count), all.size());
+            }
+        }
+    }
+}
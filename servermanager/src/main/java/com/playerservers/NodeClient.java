@@ -0,0 +1,196 @@
+package com.playerservers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Proxy-side connection to one {@link NodeAgent}. Every request opens its own short-lived
+ * connection, so a slow STOP never holds up placement or status queries for the same node.
+ */
+public class NodeClient {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String name;
+    private final String host;
+    private final int port;
+    private final String address;
+    private final String token;
+    private final int timeoutMillis;
+
+    public NodeClient(String name, String host, int port, String address, String token, int timeoutMillis) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.address = address;
+        this.token = token;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static class Capacity {
+        private final long budgetMB;
+        private final long committedMB;
+        private final int running;
+
+        Capacity(long budgetMB, long committedMB, int running) {
+            this.budgetMB = budgetMB;
+            this.committedMB = committedMB;
+            this.running = running;
+        }
+
+        public long getBudgetMB() {
+            return budgetMB;
+        }
+
+        public long getCommittedMB() {
+            return committedMB;
+        }
+
+        public long getFreeMB() {
+            return budgetMB - committedMB;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public double getLoad() {
+            return budgetMB <= 0 ? 1.0 : (double) committedMB / budgetMB;
+        }
+    }
+
+    public Capacity capacity() throws IOException {
+        String[] parts = request("CAPACITY", timeoutMillis).get(0).split(" ");
+        return new Capacity(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    public void create(String server) throws IOException {
+        request("CREATE " + server, timeoutMillis);
+    }
+
+    public void put(String server, String path, byte[] content, boolean onlyIfAbsent) throws IOException {
+        request("PUT " + server + " " + path + " " + (onlyIfAbsent ? "1" : "0") + " " + Base64.getEncoder().encodeToString(content), timeoutMillis);
+    }
+
+    public void remove(String server, String path) throws IOException {
+        request("REMOVE " + server + " " + path, timeoutMillis);
+    }
+
+    /**
+     * Starts a server with the given heap and JVM profile. The agent builds the command line itself;
+     * committedMB is what the server counts against the node's budget.
+     */
+    public void start(String server, long committedMB, int heapMB, int port, JvmProfile profile) throws IOException {
+        StringBuilder command = new StringBuilder("START ").append(server).append(' ').append(committedMB)
+                .append(' ').append(heapMB).append(' ').append(port).append(' ').append(profile.getGc().toUpperCase())
+                .append(' ').append(profile.isAlwaysPreTouch() ? '1' : '0');
+        for (String flag : profile.getFlags()) {
+            command.append(' ').append(flag);
+        }
+        request(command.toString(), timeoutMillis);
+    }
+
+    /**
+     * Stops a server on the node and waits for it, returning the agent's status and exit code.
+     */
+    public String[] stop(String server, long graceSeconds) throws IOException {
+        // The agent answers only once the child has exited, after at most grace + 10s + kill
+        int timeout = (int) Math.min(Integer.MAX_VALUE, timeoutMillis + (graceSeconds + 20) * 1000);
+        return request("STOP " + server + " " + graceSeconds, timeout).get(0).split(" ");
+    }
+
+    /**
+     * Sends SIGSTOP or SIGCONT ("STOP" or "CONT") to a server's process.
+     */
+    public void signal(String server, String signal) throws IOException {
+        request("SIGNAL " + server + " " + signal, timeoutMillis);
+    }
+
+    public boolean isRunning(String server) throws IOException {
+        return request("STATUS " + server, timeoutMillis).get(0).equals("RUNNING");
+    }
+
+    public List<String> listRunning() throws IOException {
+        String reply = request("LIST", timeoutMillis).get(0);
+        List<String> names = new ArrayList<>();
+        Collections.addAll(names, reply.isEmpty() ? new String[0] : reply.split(" "));
+        return names;
+    }
+
+    public List<String> tail(String server, int lines) throws IOException {
+        List<String> reply = request("TAIL " + server + " " + lines, timeoutMillis);
+        return reply.subList(1, reply.size());
+    }
+
+    public void delete(String server) throws IOException {
+        request("DELETE " + server, timeoutMillis);
+    }
+
+    /**
+     * Sends one command and returns the payload of its OK line followed by any extra lines. An ERR
+     * reply is thrown as an IOException carrying the agent's message.
+     */
+    private List<String> request(String command, int timeout) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(timeout);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            if (!token.isEmpty()) {
+                out.write("AUTH " + token + "\n");
+            }
+            out.write(command + "\n");
+            out.flush();
+
+            if (!token.isEmpty()) {
+                readOk(in);
+            }
+            List<String> reply = new ArrayList<>();
+            String payload = readOk(in);
+            reply.add(payload);
+            if (command.startsWith("TAIL ")) {
+                int count = Integer.parseInt(payload);
+                for (int i = 0; i < count; i++) {
+                    String line = in.readLine();
+                    if (line == null) {
+                        break;
+                    }
+                    reply.add(line);
+                }
+            }
+            return reply;
+        }
+    }
+
+    private String readOk(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("Node " + name + " closed the connection");
+        }
+        if (line.startsWith("ERR")) {
+            throw new IOException("Node " + name + ": " + line.substring(3).trim());
+        }
+        return line.length() > 2 ? line.substring(3) : "";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Host the proxy uses to reach servers running on this node.
+     */
+    public String getAddress() {
+        return address;
+    }
+}
@@ -0,0 +1,178 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Knows the worker nodes player servers can run on and decides where new servers go. The proxy
+ * host itself is the {@link #LOCAL} node; remote nodes run a {@link NodeAgent}. New servers are
+ * placed on the node with the lowest committed memory ratio that still has room for them.
+ */
+public class NodeScheduler {
+    public static final String LOCAL = "local";
+
+    private final PlayerServerManager plugin;
+    private final Map<String, NodeClient> nodes = new LinkedHashMap<>();
+    private final boolean localEnabled;
+    private final String localAddress;
+
+    public NodeScheduler(PlayerServerManager plugin, Configuration config) {
+        this.plugin = plugin;
+        this.localEnabled = config.getBoolean("server.nodes.local_enabled", true);
+        this.localAddress = config.getString("server.host", "localhost");
+
+        Configuration agents = config.getSection("server.nodes.agents");
+        int timeoutMillis = config.getInt("server.nodes.request_timeout_ms", 10000);
+        for (String name : agents.getKeys()) {
+            Configuration agent = agents.getSection(name);
+            String host = agent.getString("host", "localhost");
+            nodes.put(name, new NodeClient(
+                    name,
+                    host,
+                    agent.getInt("port", 7070),
+                    agent.getString("address", host),
+                    agent.getString("token", ""),
+                    timeoutMillis
+            ));
+        }
+        if (!nodes.isEmpty()) {
+            plugin.getLogger().info("Using " + nodes.size() + " worker nodes" + (localEnabled ? " plus the proxy host" : ""));
+        }
+    }
+
+    /**
+     * Periodically asks every node which servers are running, so crashes on remote nodes are noticed.
+     */
+    public void startSync(long intervalSeconds) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        plugin.getProxy().getScheduler().schedule(plugin, () -> sync(plugin.getPlayerServers().values()),
+                0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void sync(Collection<PlayerServer> servers) {
+        for (NodeClient node : nodes.values()) {
+            Set<String> running;
+            try {
+                running = new HashSet<>(node.listRunning());
+            } catch (IOException e) {
+                plugin.getLogger().warning("Node " + node.getName() + " is unreachable: " + e.getMessage());
+                continue;
+            }
+            for (PlayerServer server : servers) {
+                if (node.getName().equals(server.getNode())) {
+                    server.setRunning(running.contains(server.getServerName()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the least-loaded node with room for a server with the given heap. Both sides are compared
+     * in committed memory, the heap plus JVM overhead. Falls back to the proxy host (where starts wait
+     * in the admission queue) when no node has room. Asks every agent for its capacity, so call it
+     * off the command thread.
+     */
+    public String place(int heapMB) {
+        AdmissionController admission = plugin.getServerManager().getAdmission();
+        Map<String, NodeClient.Capacity> capacities = new LinkedHashMap<>();
+        if (localEnabled) {
+            capacities.put(LOCAL, new NodeClient.Capacity(admission.getMemoryBudgetMB(), admission.getCommittedMemoryMB(), 0));
+        }
+        for (NodeClient node : nodes.values()) {
+            try {
+                capacities.put(node.getName(), node.capacity());
+            } catch (IOException e) {
+                plugin.getLogger().warning("Skipping unreachable node " + node.getName() + ": " + e.getMessage());
+            }
+        }
+
+        String best = leastLoaded(capacities, admission.committedMemory(heapMB));
+        if (best == null) {
+            return localEnabled || nodes.isEmpty() ? LOCAL : nodes.keySet().iterator().next();
+        }
+        return best;
+    }
+
+    /**
+     * The node with the lowest committed memory ratio that has memoryMB free, or null if none has.
+     */
+    static String leastLoaded(Map<String, NodeClient.Capacity> capacities, long memoryMB) {
+        String best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (Map.Entry<String, NodeClient.Capacity> entry : capacities.entrySet()) {
+            NodeClient.Capacity capacity = entry.getValue();
+            if (capacity.getFreeMB() >= memoryMB && capacity.getLoad() < bestLoad) {
+                best = entry.getKey();
+                bestLoad = capacity.getLoad();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Records which node a server lives on. Servers without a row live on the proxy host.
+     */
+    public void assign(PlayerServer server, String node) {
+        server.setNode(LOCAL.equals(node) ? null : node);
+        if (server.getNode() == null) {
+            return;
+        }
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement(
+                "INSERT INTO server_nodes (server_id, node) VALUES (?, ?)")) {
+            stmt.setInt(1, server.getId());
+            stmt.setString(2, node);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to record node of server " + server.getServerName(), e);
+        }
+    }
+
+    public boolean isRemote(PlayerServer server) {
+        return server.getNode() != null;
+    }
+
+    /**
+     * Returns the agent client for a remote server's node.
+     */
+    public NodeClient getClient(PlayerServer server) throws IOException {
+        NodeClient client = nodes.get(server.getNode());
+        if (client == null) {
+            throw new IOException("Unknown node " + server.getNode() + " for server " + server.getServerName());
+        }
+        return client;
+    }
+
+    /**
+     * Host the proxy connects to for a server, which is its node's address.
+     */
+    public String getAddress(PlayerServer server) {
+        NodeClient client = server.getNode() == null ? null : nodes.get(server.getNode());
+        return client == null ? localAddress : client.getAddress();
+    }
+
+    public List<String> getNodeNames() {
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    public NodeClient getNode(String name) {
+        return nodes.get(name);
+    }
+
+    public boolean isLocalEnabled() {
+        return localEnabled;
+    }
+}
@@ -0,0 +1,246 @@
+package com.playerservers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.logging.Level;
+
+/**
+ * Keeps every version of the approved plugins once, under its SHA-256, and hardlinks the current
+ * version into server plugins/ directories. New versions are picked up from the jars dropped into
+ * the plugin's own plugins/ folder, named after the plugin. Because servers only hold links, moving
+ * every server to a new version replaces one directory entry per server instead of copying the jar.
+ */
+public class PluginStore {
+    private final PlayerServerManager plugin;
+    private final Path objectsDir;
+    private final Path sourceDir;
+    private final Map<String, Version> current = new ConcurrentHashMap<>();
+
+    public PluginStore(PlayerServerManager plugin, Path storeDir, Path sourceDir) {
+        this.plugin = plugin;
+        this.objectsDir = storeDir.resolve("objects");
+        this.sourceDir = sourceDir;
+    }
+
+    /**
+     * Loads the current versions from the database and imports any new jars.
+     */
+    public void load() {
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement(
+                "SELECT plugin_name, version, sha256 FROM plugin_store WHERE is_current = 1");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Version version = new Version(rs.getString("plugin_name"), rs.getString("version"), rs.getString("sha256"));
+                if (Files.exists(objectPath(version.getSha256()))) {
+                    current.put(version.getPluginName(), version);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load plugin store", e);
+        }
+        importAll();
+    }
+
+    /**
+     * Stores every jar in the source folder whose contents are not stored yet and makes it the
+     * current version of its plugin. Returns the number of new versions.
+     */
+    public synchronized int importAll() {
+        if (!Files.isDirectory(sourceDir)) {
+            return 0;
+        }
+        int imported = 0;
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(sourceDir, "*.jar")) {
+            for (Path jar : jars) {
+                String name = jar.getFileName().toString();
+                name = name.substring(0, name.length() - ".jar".length());
+                try {
+                    if (importJar(name, jar)) {
+                        imported++;
+                    }
+                } catch (IOException | NoSuchAlgorithmException | SQLException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to import plugin " + jar.getFileName() + " into the store", e);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to scan " + sourceDir + " for plugins", e);
+        }
+        return imported;
+    }
+
+    private boolean importJar(String name, Path jar) throws IOException, NoSuchAlgorithmException, SQLException {
+        String sha256 = SharedJarCache.sha256(jar);
+        Version existing = current.get(name);
+        if (existing != null && existing.getSha256().equals(sha256)) {
+            return false;
+        }
+
+        Path object = objectPath(sha256);
+        if (!Files.exists(object)) {
+            Files.createDirectories(object.getParent());
+            Path temp = object.resolveSibling(sha256 + ".tmp");
+            Files.copy(jar, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+            // Servers share this inode, so it must never be written through one of them
+            object.toFile().setWritable(false, false);
+        }
+
+        Version version = new Version(name, readVersion(jar, sha256), sha256);
+        // Switching the current version is one transaction, so a failure never leaves the plugin without one
+        Connection conn = plugin.getDbConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement clear = conn.prepareStatement(
+                    "UPDATE plugin_store SET is_current = 0 WHERE plugin_name = ?")) {
+                clear.setString(1, name);
+                clear.executeUpdate();
+            }
+            try (PreparedStatement delete = conn.prepareStatement(
+                    "DELETE FROM plugin_store WHERE plugin_name = ? AND sha256 = ?")) {
+                delete.setString(1, name);
+                delete.setString(2, sha256);
+                delete.executeUpdate();
+            }
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO plugin_store (plugin_name, version, sha256, is_current) VALUES (?, ?, ?, 1)")) {
+                insert.setString(1, name);
+                insert.setString(2, version.getVersion());
+                insert.setString(3, sha256);
+                insert.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        current.put(name, version);
+        plugin.getLogger().info("Stored plugin " + name + " version " + version.getVersion());
+        return true;
+    }
+
+    /**
+     * Current version of a plugin, or null if the store has none.
+     */
+    public Version getCurrent(String pluginName) {
+        return current.get(pluginName);
+    }
+
+    public Path getObject(Version version) {
+        return objectPath(version.getSha256());
+    }
+
+    /**
+     * Points target at the given version. The new link is created next to the target and renamed
+     * over it, so a running server keeps its open jar and never sees a half-written file.
+     * Returns false if the target already is that version.
+     */
+    public boolean link(Version version, Path target) throws IOException {
+        Path object = objectPath(version.getSha256());
+        if (Files.exists(target) && Files.isSameFile(object, target)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, object);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Store and servers on different file systems
+            Files.copy(object, temp);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * All stored versions of a plugin, newest first.
+     */
+    public List<Version> getVersions(String pluginName) {
+        List<Version> versions = new ArrayList<>();
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement(
+                "SELECT version, sha256 FROM plugin_store WHERE plugin_name = ? ORDER BY imported_at DESC")) {
+            stmt.setString(1, pluginName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    versions.add(new Version(pluginName, rs.getString("version"), rs.getString("sha256")));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to list versions of plugin " + pluginName, e);
+        }
+        return versions;
+    }
+
+    private Path objectPath(String sha256) {
+        return objectsDir.resolve(sha256.substring(0, 2)).resolve(sha256 + ".jar");
+    }
+
+    /**
+     * Reads the version from the jar's plugin.yml, falling back to the start of its hash.
+     */
+    private static String readVersion(Path jar, String sha256) {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            ZipEntry entry = jarFile.getEntry("plugin.yml");
+            if (entry != null) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(jarFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("version:")) {
+                            String version = line.substring("version:".length()).trim().replaceAll("^['\"]|['\"]$", "");
+                            if (!version.isEmpty()) {
+                                return version.length() > 64 ? version.substring(0, 64) : version;
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Not a readable jar; the hash still identifies it
+        }
+        return sha256.substring(0, 12);
+    }
+
+    public static class Version {
+        private final String pluginName;
+        private final String version;
+        private final String sha256;
+
+        public Version(String pluginName, String version, String sha256) {
+            this.pluginName = pluginName;
+            this.version = version;
+            this.sha256 = sha256;
+        }
+
+        public String getPluginName() {
+            return pluginName;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.playerservers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Hands out server ports from a fixed range. A bitset tracks which ports are taken and a rotating
+ * cursor makes allocation effectively constant time. Every allocation is persisted as a lease in
+ * the port_leases table, so a proxy restart cannot hand the same port out twice.
+ */
+public class PortAllocator {
+    private final PlayerServerManager plugin;
+    private final int startPort;
+    private final int maxPort;
+    private final String bindHost;
+    private final boolean probe;
+    private final BitSet used;
+    private int cursor;
+
+    public PortAllocator(PlayerServerManager plugin, int startPort, int maxPort, String bindHost, boolean probe) {
+        this.plugin = plugin;
+        this.startPort = startPort;
+        this.maxPort = maxPort;
+        this.bindHost = bindHost;
+        this.probe = probe;
+        this.used = new BitSet(maxPort - startPort + 1);
+        this.cursor = 0;
+    }
+
+    /**
+     * Loads persisted leases and adopts the ports of servers created before leases existed.
+     */
+    public synchronized void load() {
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement("SELECT port FROM port_leases");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                markUsed(rs.getInt("port"));
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load port leases", e);
+        }
+
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement("SELECT player_uuid, server_port FROM servers");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int port = rs.getInt("server_port");
+                if (inRange(port) && !used.get(port - startPort)) {
+                    reserve(port, UUID.fromString(rs.getString("player_uuid")));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to adopt ports of existing servers", e);
+        }
+
+        plugin.getLogger().info("Port allocator loaded " + used.cardinality() + " leases, " + getFreeCount() + " ports free");
+    }
+
+    /**
+     * Leases the next free port to the given owner, or returns -1 if the range is exhausted.
+     */
+    public synchronized int allocate(UUID owner) {
+        int size = maxPort - startPort + 1;
+        int scanned = 0;
+        while (scanned < size) {
+            int index = used.nextClearBit(cursor);
+            if (index >= size) {
+                // Wrap around once to pick up ports released behind the cursor
+                scanned += size - cursor;
+                cursor = 0;
+                continue;
+            }
+            scanned += index - cursor + 1;
+            cursor = index + 1 >= size ? 0 : index + 1;
+
+            int port = startPort + index;
+            if (probe && !isBindable(port)) {
+                // Something outside our control holds this port; skip it for this session
+                used.set(index);
+                plugin.getLogger().warning("Port " + port + " is in use by another process, skipping it");
+                continue;
+            }
+            if (persistLease(port, owner)) {
+                used.set(index);
+                return port;
+            }
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Leases a specific port. Returns false if it is outside the range or already taken.
+     */
+    public synchronized boolean reserve(int port, UUID owner) {
+        if (!inRange(port) || used.get(port - startPort)) {
+            return false;
+        }
+        if (!persistLease(port, owner)) {
+            return false;
+        }
+        used.set(port - startPort);
+        return true;
+    }
+
+    public synchronized void release(int port) {
+        if (!inRange(port)) {
+            return;
+        }
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement("DELETE FROM port_leases WHERE port = ?")) {
+            stmt.setInt(1, port);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to release port lease " + port, e);
+        }
+        used.clear(port - startPort);
+    }
+
+    public synchronized boolean isAllocated(int port) {
+        return inRange(port) && used.get(port - startPort);
+    }
+
+    public synchronized int getFreeCount() {
+        return (maxPort - startPort + 1) - used.cardinality();
+    }
+
+    private boolean persistLease(int port, UUID owner) {
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement(
+                "INSERT INTO port_leases (port, owner_uuid) VALUES (?, ?)")) {
+            stmt.setInt(1, port);
+            stmt.setString(2, owner.toString());
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to persist lease for port " + port, e);
+            return false;
+        }
+    }
+
+    private boolean isBindable(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(bindHost, port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void markUsed(int port) {
+        if (inRange(port)) {
+            used.set(port - startPort);
+        }
+    }
+
+    private boolean inRange(int port) {
+        return port >= startPort && port <= maxPort;
+    }
+}
@@ -0,0 +1,244 @@
+package com.playerservers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+
+/**
+ * Watches all child server processes with a fixed number of threads. Termination is observed via
+ * {@link Process#onExit()}, and console output is pumped by a small set of threads that poll each
+ * child's pipe without blocking, so the thread count does not grow with the number of servers.
+ */
+public class ProcessSupervisor {
+    public interface OutputListener {
+        void onLine(String line);
+    }
+
+    private final PlayerServerManager plugin;
+    private final Map<Integer, Handle> handles = new ConcurrentHashMap<>();
+    private final List<Pump> pumps = new ArrayList<>();
+    private final long pollMillis;
+    private volatile boolean running = true;
+
+    public ProcessSupervisor(PlayerServerManager plugin, int pumpThreads, long pollMillis) {
+        this.plugin = plugin;
+        this.pollMillis = pollMillis;
+        for (int i = 0; i < Math.max(1, pumpThreads); i++) {
+            Pump pump = new Pump();
+            Thread thread = new Thread(pump, "PlayerServer-OutputPump-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            pumps.add(pump);
+        }
+    }
+
+    /**
+     * Starts supervising a child. Output lines go to the listener on a pump thread; the exit callback
+     * runs once the process has exited and its remaining output has been delivered.
+     */
+    public Handle supervise(PlayerServer server, Process process, ConsoleBuffer console, OutputListener listener, IntConsumer onExit) {
+        Handle handle = new Handle(server, process, console, listener, onExit);
+        handles.put(server.getId(), handle);
+
+        Pump pump = pumps.get(0);
+        for (Pump candidate : pumps) {
+            if (candidate.handles.size() < pump.handles.size()) {
+                pump = candidate;
+            }
+        }
+        pump.handles.add(handle);
+
+        process.onExit().thenRun(() -> handle.exited = true);
+        return handle;
+    }
+
+    public Handle get(int serverId) {
+        return handles.get(serverId);
+    }
+
+    public boolean isSupervised(int serverId) {
+        return handles.containsKey(serverId);
+    }
+
+    public Collection<Handle> getHandles() {
+        return handles.values();
+    }
+
+    public int getThreadCount() {
+        return pumps.size();
+    }
+
+    public void shutdown() {
+        running = false;
+    }
+
+    private class Pump implements Runnable {
+        private final List<Handle> handles = new CopyOnWriteArrayList<>();
+        private final byte[] buffer = new byte[8192];
+
+        @Override
+        public void run() {
+            while (running) {
+                boolean idle = true;
+                for (Handle handle : handles) {
+                    if (handle.pump(buffer)) {
+                        idle = false;
+                    }
+                    if (handle.finished) {
+                        handles.remove(handle);
+                    }
+                }
+
+                if (idle) {
+                    try {
+                        Thread.sleep(pollMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    public class Handle {
+        private final PlayerServer server;
+        private final Process process;
+        private final ConsoleBuffer console;
+        private final OutputListener listener;
+        private final IntConsumer onExit;
+        private final InputStream output;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private final long startedAt = System.currentTimeMillis();
+        private final CompletableFuture<Integer> termination = new CompletableFuture<>();
+        private volatile boolean exited;
+        private volatile boolean finished;
+        private boolean outputBroken;
+
+        private Handle(PlayerServer server, Process process, ConsoleBuffer console, OutputListener listener, IntConsumer onExit) {
+            this.server = server;
+            this.process = process;
+            this.console = console;
+            this.listener = listener;
+            this.onExit = onExit;
+            this.output = process.getInputStream();
+        }
+
+        /**
+         * Reads whatever output is available without blocking. Returns true if any bytes were read.
+         */
+        private boolean pump(byte[] buffer) {
+            if (finished) {
+                return false;
+            }
+
+            // Sample the exit flag first so output written just before exit is still drained
+            boolean hasExited = exited;
+            boolean readAny = false;
+            try {
+                int available;
+                while (!outputBroken && (available = output.available()) > 0) {
+                    int read = output.read(buffer, 0, Math.min(available, buffer.length));
+                    if (read <= 0) {
+                        break;
+                    }
+                    readAny = true;
+                    consume(buffer, read);
+                }
+            } catch (IOException e) {
+                if (!hasExited) {
+                    plugin.getLogger().log(Level.SEVERE, "Error reading server process output for " + server.getServerName(), e);
+                }
+                // Stop reading but keep waiting for the exit
+                outputBroken = true;
+            }
+
+            if (hasExited) {
+                finish();
+            }
+            return readAny;
+        }
+
+        private void consume(byte[] buffer, int length) {
+            if (console != null) {
+                console.write(buffer, 0, length);
+            }
+            if (listener == null) {
+                return;
+            }
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    line.write(buffer, start, i - start);
+                    emitLine();
+                    start = i + 1;
+                }
+            }
+            line.write(buffer, start, length - start);
+        }
+
+        private void emitLine() {
+            String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+            line.reset();
+            if (text.endsWith("\r")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            try {
+                listener.onLine(text);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Output listener failed for " + server.getServerName(), e);
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            if (line.size() > 0) {
+                emitLine();
+            }
+            if (console != null) {
+                console.flush();
+            }
+            handles.remove(server.getId(), this);
+            int exitCode = process.exitValue();
+            try {
+                onExit.accept(exitCode);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Exit handler failed for " + server.getServerName(), e);
+            } finally {
+                termination.complete(exitCode);
+            }
+        }
+
+        /**
+         * Completes with the exit code once the process has exited and the exit callback has run.
+         */
+        public CompletableFuture<Integer> getTermination() {
+            return termination;
+        }
+
+        public PlayerServer getServer() {
+            return server;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        public ConsoleBuffer getConsole() {
+            return console;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+    }
+}
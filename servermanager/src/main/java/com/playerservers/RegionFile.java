@@ -0,0 +1,152 @@
+package com.playerservers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Minimal reader and writer for Anvil region files (.mca). A region file starts with two 4 KiB
+ * tables for its 32x32 chunks: where each chunk's data starts and how many 4 KiB sectors it spans,
+ * then the time each chunk was last saved. Each chunk's data is a 4-byte length, a compression byte
+ * and the compressed NBT. Minecraft bumps a chunk's timestamp whenever it saves the chunk, which is
+ * what lets snapshots and resets find changed chunks from the 8 KiB header alone.
+ */
+public final class RegionFile {
+    public static final int SECTOR_BYTES = 4096;
+    public static final int CHUNKS = 1024;
+    private static final int HEADER_BYTES = 2 * SECTOR_BYTES;
+
+    private RegionFile() {
+    }
+
+    public static boolean isRegionFile(Path file, long size) {
+        return size >= HEADER_BYTES && file.getFileName().toString().endsWith(".mca");
+    }
+
+    /**
+     * Reads the location and timestamp tables.
+     */
+    public static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, buffer, 0);
+        buffer.flip();
+        int[] locations = new int[CHUNKS];
+        int[] timestamps = new int[CHUNKS];
+        for (int i = 0; i < CHUNKS; i++) {
+            locations[i] = buffer.getInt(i * 4);
+            timestamps[i] = buffer.getInt(SECTOR_BYTES + i * 4);
+        }
+        return new Header(locations, timestamps, channel.size());
+    }
+
+    /**
+     * Reads one chunk's stored bytes, from its length field to the end of its data, without the
+     * sector padding. Returns null for chunks the header points outside the file.
+     */
+    public static byte[] readChunk(FileChannel channel, Header header, int index) throws IOException {
+        long offset = (long) header.getSectorOffset(index) * SECTOR_BYTES;
+        int sectors = header.getSectorCount(index);
+        if (offset < HEADER_BYTES || offset + (long) sectors * SECTOR_BYTES > header.fileSize) {
+            return null;
+        }
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(channel, lengthBuffer, offset);
+        int length = lengthBuffer.getInt(0);
+        if (length <= 0 || length + 4L > (long) sectors * SECTOR_BYTES) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(length + 4);
+        readFully(channel, data, offset);
+        return data.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Region file ends early");
+            }
+        }
+    }
+
+    /**
+     * Writes a region file from chunks handed over in any order. Chunks are packed one after another
+     * from the first sector after the header, and the header is written last.
+     */
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        private int nextSector = HEADER_BYTES / SECTOR_BYTES;
+
+        public Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        public void write(int index, int timestamp, byte[] data) throws IOException {
+            int sectors = (data.length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+            if (sectors > 255) {
+                throw new IOException("Chunk " + index + " spans " + sectors + " sectors");
+            }
+            ByteBuffer padded = ByteBuffer.allocate(sectors * SECTOR_BYTES);
+            padded.put(data).clear();
+            long position = (long) nextSector * SECTOR_BYTES;
+            while (padded.hasRemaining()) {
+                channel.write(padded, position + padded.position());
+            }
+            header.putInt(index * 4, nextSector << 8 | sectors);
+            header.putInt(SECTOR_BYTES + index * 4, timestamp);
+            nextSector += sectors;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static class Header {
+        private final int[] locations;
+        private final int[] timestamps;
+        private final long fileSize;
+
+        private Header(int[] locations, int[] timestamps, long fileSize) {
+            this.locations = locations;
+            this.timestamps = timestamps;
+            this.fileSize = fileSize;
+        }
+
+        public boolean isPresent(int index) {
+            return locations[index] != 0;
+        }
+
+        public int getSectorOffset(int index) {
+            return locations[index] >>> 8;
+        }
+
+        public int getSectorCount(int index) {
+            return locations[index] & 0xff;
+        }
+
+        public int getTimestamp(int index) {
+            return timestamps[index];
+        }
+
+        /**
+         * True if both headers place and date every chunk the same, which for two copies of one
+         * region means no chunk was saved in either since they were identical.
+         */
+        public boolean hasSameChunks(Header other) {
+            return Arrays.equals(locations, other.locations) && Arrays.equals(timestamps, other.timestamps);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+/**
+ * Resource limits of one server: heap size, CPU share, disk bandwidth and disk space. Defaults come from
+ * server_limits; a server whose "plan" setting names an entry under server_limits.plans gets that
+ * plan's values instead.
+ */
+public class ResourceLimits {
+    public static final String PLAN_SETTING = "plan";
+
+    private final String plan;
+    private final int ramMB;
+    private final int cpuPercent;
+    private final int ioReadMBps;
+    private final int ioWriteMBps;
+    private final int storageMB;
+
+    private ResourceLimits(String plan, int ramMB, int cpuPercent, int ioReadMBps, int ioWriteMBps, int storageMB) {
+        this.plan = plan;
+        this.ramMB = ramMB;
+        this.cpuPercent = cpuPercent;
+        this.ioReadMBps = ioReadMBps;
+        this.ioWriteMBps = ioWriteMBps;
+        this.storageMB = storageMB;
+    }
+
+    public static ResourceLimits forServer(Configuration config, PlayerServer server) {
+        int ramMB = config.getInt("server.memory_mb", config.getInt("server_limits.ram_mb", 1024));
+        int cpuPercent = config.getInt("server_limits.cpu_percent", 100);
+        int ioReadMBps = config.getInt("server_limits.io_read_mbps", 0);
+        int ioWriteMBps = config.getInt("server_limits.io_write_mbps", 0);
+        int storageMB = config.getInt("server_limits.storage_mb", 0);
+
+        String plan = server.getSetting(PLAN_SETTING);
+        if (plan != null && config.contains("server_limits.plans." + plan)) {
+            Configuration section = config.getSection("server_limits.plans." + plan);
+            return new ResourceLimits(
+                    plan,
+                    section.getInt("ram_mb", ramMB),
+                    section.getInt("cpu_percent", cpuPercent),
+                    section.getInt("io_read_mbps", ioReadMBps),
+                    section.getInt("io_write_mbps", ioWriteMBps),
+                    section.getInt("storage_mb", storageMB)
+            );
+        }
+        return new ResourceLimits("default", ramMB, cpuPercent, ioReadMBps, ioWriteMBps, storageMB);
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    /**
+     * Java heap (-Xmx) of the server.
+     */
+    public int getRamMB() {
+        return ramMB;
+    }
+
+    /**
+     * CPU time the server may use, where 100 is one full core. Zero or less means unlimited.
+     */
+    public int getCpuPercent() {
+        return cpuPercent;
+    }
+
+    public int getIoReadMBps() {
+        return ioReadMBps;
+    }
+
+    public int getIoWriteMBps() {
+        return ioWriteMBps;
+    }
+
+    /**
+     * Disk space the server's directory may use. Zero or less means unlimited.
+     */
+    public int getStorageMB() {
+        return storageMB;
+    }
+
+    @Override
+    public String toString() {
+        return plan + " (" + ramMB + " MB, " + cpuPercent + "% CPU)";
+    }
+}
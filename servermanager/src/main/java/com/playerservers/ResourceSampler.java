@@ -0,0 +1,281 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples CPU, memory and disk I/O of every supervised server on one scheduled task and hands the
+ * results to registered listeners, such as PlayerStatistics#updateResourceUsage. When a server runs
+ * in its own cgroup, CPU and memory come from the group's cpu.stat and memory.current, which also
+ * count child processes and page cache charged to the server; otherwise they come from /proc.
+ * Disk I/O always comes from /proc.
+ *
+ * Each file is read into one shared buffer and parsed in place, and each server keeps a reusable
+ * {@link Usage} holding its previous CPU counters, so a pass over many servers produces next to no
+ * garbage. The task runs on a single thread, which is what makes the shared buffer safe.
+ */
+public class ResourceSampler {
+    /**
+     * Receives one sample per running server, keyed by the owner's UUID. The proxy cannot see a
+     * server's tick rate, so samples carry no TPS; listeners keep whatever they last got elsewhere.
+     */
+    public interface UsageListener {
+        void onSample(UUID owner, double cpuPercent, long memoryBytes, int players);
+    }
+
+    // USER_HZ; fixed at 100 on every mainstream Linux architecture
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final long PAGE_SIZE = 4096;
+    private static final byte[] READ_BYTES = "read_bytes:".getBytes();
+    private static final byte[] WRITE_BYTES = "write_bytes:".getBytes();
+
+    private final PlayerServerManager plugin;
+    private final ProcessSupervisor supervisor;
+    private final CgroupManager cgroups;
+    private final Map<Integer, Usage> usage = new ConcurrentHashMap<>();
+    private final List<UsageListener> listeners = new CopyOnWriteArrayList<>();
+    private final byte[] buffer = new byte[4096];
+    private int length;
+    private ScheduledTask task;
+
+    public ResourceSampler(PlayerServerManager plugin, ProcessSupervisor supervisor, CgroupManager cgroups) {
+        this.plugin = plugin;
+        this.supervisor = supervisor;
+        this.cgroups = cgroups;
+    }
+
+    public void start(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::sampleAll, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void addListener(UsageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Latest sample of a server, or null if it has not been sampled since it started.
+     */
+    public Usage getUsage(PlayerServer server) {
+        Usage sample = usage.get(server.getId());
+        return sample != null && sample.valid ? sample : null;
+    }
+
+    private void sampleAll() {
+        long now = System.nanoTime();
+        for (ProcessSupervisor.Handle handle : supervisor.getHandles()) {
+            PlayerServer server = handle.getServer();
+            Usage sample = usage.computeIfAbsent(server.getId(), id -> new Usage());
+            if (!sample(handle.getProcess().pid(), sample, now)) {
+                continue;
+            }
+            sampleGroup(server, sample, now);
+
+            ServerInfo info = plugin.getProxy().getServerInfo(server.getServerName());
+            int players = info == null ? 0 : info.getPlayers().size();
+            for (UsageListener listener : listeners) {
+                try {
+                    listener.onSample(server.getPlayerUuid(), sample.cpuPercent, sample.memoryBytes, players);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().warning("Resource listener failed for " + server.getServerName() + ": " + e);
+                }
+            }
+        }
+
+        // Forget servers that are no longer supervised
+        usage.keySet().removeIf(id -> !supervisor.isSupervised(id));
+    }
+
+    private boolean sample(long pid, Usage sample, long now) {
+        if (sample.pid != pid) {
+            sample.pid = pid;
+            sample.statPath = "/proc/" + pid + "/stat";
+            sample.statmPath = "/proc/" + pid + "/statm";
+            sample.ioPath = "/proc/" + pid + "/io";
+        }
+
+        // /proc/<pid>/stat: fields after the command name, which may itself contain spaces and ')'
+        if (!read(sample.statPath)) {
+            return false;
+        }
+        int pos = lastIndexOf((byte) ')') + 2;
+        // pos is at field 3 (state); utime and stime are fields 14 and 15, starttime is field 22
+        pos = skipFields(pos, 11);
+        long utime = parseLong(pos);
+        pos = skipFields(pos, 1);
+        long stime = parseLong(pos);
+        pos = skipFields(pos, 7);
+        long startTime = parseLong(pos);
+
+        long ticks = utime + stime;
+        if (sample.valid && sample.startTime == startTime && now > sample.sampledAt) {
+            long elapsedTicks = (now - sample.sampledAt) * CLOCK_TICKS_PER_SECOND / 1_000_000_000L;
+            sample.cpuPercent = elapsedTicks <= 0 ? 0 : (ticks - sample.cpuTicks) * 100.0 / elapsedTicks;
+        } else {
+            // First sample or the pid was reused: no delta to work from yet
+            sample.cpuPercent = 0;
+        }
+        sample.cpuTicks = ticks;
+        boolean restarted = sample.startTime != startTime;
+        sample.startTime = startTime;
+        sample.sampledAt = now;
+        if (restarted) {
+            // A new process gets a new group, whose counters start again from zero
+            sample.groupCpuMicros = -1;
+        }
+
+        // /proc/<pid>/statm: size resident shared ... in pages
+        if (read(sample.statmPath)) {
+            sample.memoryBytes = parseLong(skipFields(0, 1)) * PAGE_SIZE;
+        }
+
+        // /proc/<pid>/io is only readable for processes we own; leave the counters at zero otherwise
+        if (read(sample.ioPath)) {
+            sample.readBytes = valueAfter(READ_BYTES);
+            sample.writeBytes = valueAfter(WRITE_BYTES);
+        }
+        sample.valid = true;
+        return true;
+    }
+
+    /**
+     * Replaces the /proc CPU and memory figures with the server's cgroup counters, if it has a group.
+     */
+    private void sampleGroup(PlayerServer server, Usage sample, long now) {
+        CgroupManager.Usage group = cgroups.readUsage(server);
+        if (group == null) {
+            sample.groupCpuMicros = -1;
+            return;
+        }
+        long elapsedMicros = (now - sample.groupSampledAt) / 1000;
+        if (sample.groupCpuMicros >= 0 && group.getCpuMicros() >= sample.groupCpuMicros && elapsedMicros > 0) {
+            sample.cpuPercent = (group.getCpuMicros() - sample.groupCpuMicros) * 100.0 / elapsedMicros;
+        }
+        sample.groupCpuMicros = group.getCpuMicros();
+        sample.groupSampledAt = now;
+        sample.memoryBytes = group.getMemoryBytes();
+    }
+
+    private boolean read(String path) {
+        try (FileInputStream in = new FileInputStream(path)) {
+            length = 0;
+            int n;
+            while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += n;
+            }
+            return length > 0;
+        } catch (IOException e) {
+            // The process exited between listing and reading
+            return false;
+        }
+    }
+
+    private int lastIndexOf(byte b) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipFields(int pos, int count) {
+        for (int i = 0; i < count && pos < length; i++) {
+            while (pos < length && buffer[pos] != ' ') {
+                pos++;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private long parseLong(int pos) {
+        long value = 0;
+        while (pos < length && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            value = value * 10 + (buffer[pos++] - '0');
+        }
+        return value;
+    }
+
+    private long valueAfter(byte[] key) {
+        outer:
+        for (int i = 0; i + key.length <= length; i++) {
+            if (i > 0 && buffer[i - 1] != '\n') {
+                continue;
+            }
+            for (int j = 0; j < key.length; j++) {
+                if (buffer[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            int pos = i + key.length;
+            while (pos < length && buffer[pos] == ' ') {
+                pos++;
+            }
+            return parseLong(pos);
+        }
+        return 0;
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Most recent resource usage of one server process.
+     */
+    public static class Usage {
+        private volatile double cpuPercent;
+        private volatile long memoryBytes;
+        private volatile long readBytes;
+        private volatile long writeBytes;
+        private long pid;
+        private String statPath;
+        private String statmPath;
+        private String ioPath;
+        private long cpuTicks;
+        private long startTime;
+        private long sampledAt;
+        private long groupCpuMicros = -1;
+        private long groupSampledAt;
+        private volatile boolean valid;
+
+        /**
+         * CPU used since the previous sample, where 100 is one full core.
+         */
+        public double getCpuPercent() {
+            return cpuPercent;
+        }
+
+        /**
+         * Memory charged to the server's cgroup, or the resident set size of the process if it has none.
+         */
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        /**
+         * Total bytes the process has read from storage since it started.
+         */
+        public long getReadBytes() {
+            return readBytes;
+        }
+
+        public long getWriteBytes() {
+            return writeBytes;
+        }
+    }
+}
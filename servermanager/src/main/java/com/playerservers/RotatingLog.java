@@ -0,0 +1,134 @@
+package com.playerservers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only console log for one server. When the active file reaches its size limit it is renamed
+ * and gzip-compressed in the background, keeping at most maxFiles compressed files.
+ */
+public class RotatingLog {
+    private static final String ACTIVE_NAME = "console.log";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final Executor compressor;
+    private final Logger logger;
+    private OutputStream out;
+    private long size;
+    private boolean failed;
+
+    public RotatingLog(Path directory, long maxBytes, int maxFiles, Executor compressor, Logger logger) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.compressor = compressor;
+        this.logger = logger;
+    }
+
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        if (failed) {
+            return;
+        }
+        try {
+            if (out == null) {
+                open();
+            }
+            out.write(bytes, offset, length);
+            size += length;
+            if (size >= maxBytes) {
+                rotate();
+            }
+        } catch (IOException e) {
+            // Don't keep retrying on every line once the disk refuses writes
+            failed = true;
+            logger.log(Level.WARNING, "Failed to write console log in " + directory + ", disabling it", e);
+        }
+    }
+
+    public synchronized void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to flush console log in " + directory, e);
+        }
+    }
+
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close console log in " + directory, e);
+        }
+        out = null;
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        Path active = directory.resolve(ACTIVE_NAME);
+        size = Files.exists(active) ? Files.size(active) : 0;
+        out = new BufferedOutputStream(Files.newOutputStream(active, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 16 * 1024);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        Path rotated = directory.resolve("console-" + System.currentTimeMillis() + ".log");
+        Files.move(directory.resolve(ACTIVE_NAME), rotated);
+        compressor.execute(() -> compress(rotated));
+    }
+
+    private void compress(Path rotated) {
+        Path gzipped = rotated.resolveSibling(rotated.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(rotated);
+             OutputStream gz = new GZIPOutputStream(Files.newOutputStream(gzipped))) {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                gz.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compress console log " + rotated, e);
+            return;
+        }
+
+        try {
+            Files.delete(rotated);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete compressed console log " + rotated, e);
+        }
+        prune();
+    }
+
+    private void prune() {
+        File[] archives = directory.toFile().listFiles((dir, name) -> name.startsWith("console-") && name.endsWith(".log.gz"));
+        if (archives == null || archives.length <= maxFiles) {
+            return;
+        }
+        Arrays.sort(archives, Comparator.comparing(File::getName));
+        for (int i = 0; i < archives.length - maxFiles; i++) {
+            if (!archives[i].delete()) {
+                logger.warning("Failed to delete old console log " + archives[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.playerservers;
+
+import net.md_5.bungee.config.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Host-wide, content-addressed store of the server jar and everything Paper's paperclip produces
+ * from it on first boot: the downloaded vanilla jar in cache/, the patched jar in versions/ and
+ * the libraries/ tree. The jar is patched once in a staging directory, every resulting file is
+ * stored under its SHA-256, and a manifest per jar lists where each file belongs.
+ *
+ * New servers get hardlinks (or symlinks across file systems) to the stored files, so paperclip
+ * finds everything with matching hashes and skips patching, and N servers share one copy on disk.
+ * Stored files are read-only so a server can never modify the shared inode.
+ */
+public class SharedJarCache {
+    private static final List<String> PATCHED_DIRS = Arrays.asList("cache", "libraries", "versions");
+
+    private final PlayerServerManager plugin;
+    private final Path objectsDir;
+    private final Path manifestsDir;
+    private final Path stagingRoot;
+    private final boolean enabled;
+    private final long patchTimeoutSeconds;
+    // Stamp and hash of the last hashed jar, replaced together
+    private volatile String[] cachedJar = new String[2];
+
+    public SharedJarCache(PlayerServerManager plugin, Configuration config, Path storeDir) {
+        this.plugin = plugin;
+        this.objectsDir = storeDir.resolve("objects");
+        this.manifestsDir = storeDir.resolve("manifests");
+        this.stagingRoot = storeDir.resolve("staging");
+        this.enabled = config.getBoolean("server.shared_cache.enabled", true);
+        this.patchTimeoutSeconds = config.getLong("server.shared_cache.patch_timeout_seconds", 300);
+    }
+
+    /**
+     * Patches the jar once and stores the result, unless a manifest for its contents exists. Runs
+     * for as long as paperclip needs to download and patch, so call it off the main thread.
+     */
+    public synchronized void prime(Path serverJar) {
+        if (!enabled || !Files.isRegularFile(serverJar)) {
+            return;
+        }
+        Path staging = null;
+        try {
+            String jarHash = jarHash(serverJar);
+            Path manifest = manifestsDir.resolve(jarHash);
+            if (Files.exists(manifest)) {
+                return;
+            }
+
+            Files.createDirectories(objectsDir);
+            Files.createDirectories(manifestsDir);
+            staging = stagingRoot.resolve(jarHash);
+            deleteTree(staging);
+            Files.createDirectories(staging);
+            String jarName = serverJar.getFileName().toString();
+            Files.copy(serverJar, staging.resolve(jarName));
+
+            long startedAt = System.currentTimeMillis();
+            if (isPaperclip(serverJar) && !patch(staging, jarName)) {
+                return;
+            }
+
+            // Move every produced file into the store and remember where it belongs
+            List<String> entries = new ArrayList<>();
+            entries.add(store(staging.resolve(jarName)) + " " + jarName);
+            for (String dir : PATCHED_DIRS) {
+                Path root = staging.resolve(dir);
+                if (!Files.isDirectory(root)) {
+                    continue;
+                }
+                List<Path> files;
+                try (Stream<Path> paths = Files.walk(root)) {
+                    files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    entries.add(store(file) + " " + staging.relativize(file).toString().replace('\\', '/'));
+                }
+            }
+
+            Path temp = manifestsDir.resolve(jarHash + ".tmp");
+            Files.write(temp, entries, StandardCharsets.UTF_8);
+            Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            plugin.getLogger().info("Cached " + entries.size() + " patched files of " + jarName + " in "
+                    + (System.currentTimeMillis() - startedAt) + "ms");
+        } catch (IOException | NoSuchAlgorithmException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to build the shared jar cache for " + serverJar, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (staging != null) {
+                try {
+                    deleteTree(staging);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to remove staging directory " + staging, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Links the jar and its patched files into a server directory. Returns false if the jar has not
+     * been cached yet, in which case the caller provides the jar and the server patches itself.
+     */
+    public boolean link(Path serverJar, Path serverDir) {
+        if (!enabled || !Files.isRegularFile(serverJar)) {
+            return false;
+        }
+        try {
+            Path manifest = manifestsDir.resolve(jarHash(serverJar));
+            if (!Files.exists(manifest)) {
+                return false;
+            }
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                int space = line.indexOf(' ');
+                Path object = objectPath(line.substring(0, space));
+                Path target = serverDir.resolve(line.substring(space + 1)).normalize();
+                if (!target.startsWith(serverDir)) {
+                    throw new IOException("Manifest entry escapes the server directory: " + line);
+                }
+                Files.createDirectories(target.getParent());
+                linkFile(object, target);
+            }
+            return true;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to link shared jar files into " + serverDir, e);
+            return false;
+        }
+    }
+
+    /**
+     * Content hash of the server jar, recomputed only when its path, size or modification time
+     * changes, so linking a new server doesn't rehash a 50 MB jar.
+     */
+    private String jarHash(Path serverJar) throws IOException, NoSuchAlgorithmException {
+        String stamp = serverJar.toAbsolutePath() + ":" + Files.size(serverJar) + ":" + Files.getLastModifiedTime(serverJar).toMillis();
+        String[] cached = cachedJar;
+        if (!stamp.equals(cached[0])) {
+            cached = new String[] {stamp, sha256(serverJar)};
+            cachedJar = cached;
+        }
+        return cached[1];
+    }
+
+    private boolean patch(Path staging, String jarName) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder("java", "-Dpaperclip.patchonly=true", "-jar", jarName);
+        pb.directory(staging.toFile());
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(staging.resolve("patch.log").toFile());
+        Process process = pb.start();
+        if (!process.waitFor(patchTimeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            plugin.getLogger().warning("Patching " + jarName + " did not finish within " + patchTimeoutSeconds + "s");
+            return false;
+        }
+        if (process.exitValue() != 0) {
+            plugin.getLogger().warning("Patching " + jarName + " failed with exit code " + process.exitValue() + ": "
+                    + String.join(" / ", tail(staging.resolve("patch.log"), 5)));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Only paperclip jars understand paperclip.patchonly; anything else would start a server.
+     */
+    private static boolean isPaperclip(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            String mainClass = jarFile.getManifest() == null ? null : jarFile.getManifest().getMainAttributes().getValue("Main-Class");
+            return mainClass != null && mainClass.toLowerCase().contains("paperclip");
+        }
+    }
+
+    private String store(Path file) throws IOException, NoSuchAlgorithmException {
+        String hash = sha256(file);
+        Path object = objectPath(hash);
+        if (Files.exists(object)) {
+            Files.delete(file);
+        } else {
+            Files.createDirectories(object.getParent());
+            Files.move(file, object, StandardCopyOption.ATOMIC_MOVE);
+            object.toFile().setWritable(false, false);
+        }
+        return hash;
+    }
+
+    private Path objectPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void linkFile(Path object, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, object);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Servers on another file system than the store get a symlink instead
+            Files.createSymbolicLink(target, object.toAbsolutePath());
+        }
+    }
+
+    private static List<String> tail(Path file, int lines) {
+        try {
+            List<String> all = Files.readAllLines(file, StandardCharsets.UTF_8);
+            return all.subList(Math.max(0, all.size() - lines), all.size());
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.sorted((a, b) -> b.getNameCount() - a.getNameCount()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    static String sha256(Path file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[65536];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
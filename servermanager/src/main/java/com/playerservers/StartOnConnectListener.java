@@ -0,0 +1,150 @@
+package com.playerservers;
+
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.ComponentBuilder;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.event.ServerConnectEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.event.EventHandler;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a stopped player server when someone connects to it directly. The player is held where
+ * they are, or on the hold server if they are just joining the network, and is forwarded once the
+ * server is ready. Everyone connecting while the server boots waits on the same start.
+ */
+public class StartOnConnectListener implements Listener {
+    private final PlayerServerManager plugin;
+    private final String holdServerName;
+    private final long progressIntervalSeconds;
+    private final Map<Integer, Set<UUID>> waiting = new ConcurrentHashMap<>();
+
+    public StartOnConnectListener(PlayerServerManager plugin) {
+        this.plugin = plugin;
+        this.holdServerName = plugin.getConfig().getString("server.start_on_connect.hold_server",
+                plugin.getConfig().getString("gui.hub_server", "lobby"));
+        this.progressIntervalSeconds = Math.max(1, plugin.getConfig().getLong("server.start_on_connect.progress_interval_seconds", 5));
+    }
+
+    @EventHandler
+    public void onServerConnect(ServerConnectEvent event) {
+        if (event.isCancelled()) {
+            return;
+        }
+        PlayerServer server = plugin.findServerByName(event.getTarget().getName());
+        ServerManager serverManager = plugin.getServerManager();
+        if (server != null && server.isFrozen()) {
+            // Resuming takes milliseconds, well within the connect's handshake, so it can go ahead right away
+            serverManager.thawServer(server);
+            return;
+        }
+        if (server == null || (server.isRunning() && !serverManager.isStarting(server))) {
+            return;
+        }
+
+        ProxiedPlayer player = event.getPlayer();
+        ServerInfo holdServer = plugin.getProxy().getServerInfo(holdServerName);
+        if (player.getServer() != null) {
+            // Keep the player where they are until the server is up
+            event.setCancelled(true);
+        } else if (holdServer != null && !holdServer.getName().equals(server.getServerName())) {
+            event.setTarget(holdServer);
+        }
+
+        hold(player, server);
+    }
+
+    private void hold(ProxiedPlayer player, PlayerServer server) {
+        final Set<UUID> players;
+        boolean first;
+        synchronized (waiting) {
+            players = waiting.computeIfAbsent(server.getId(), id -> ConcurrentHashMap.newKeySet());
+            if (!players.add(player.getUniqueId())) {
+                return;
+            }
+            first = players.size() == 1;
+        }
+        player.sendMessage(new ComponentBuilder("Starting " + server.getServerName() + ", you will be sent there once it is ready...").color(ChatColor.YELLOW).create());
+
+        // Only the first waiting player kicks off the start; later ones are forwarded along with it
+        if (!first) {
+            sendQueuePosition(player, server);
+            return;
+        }
+
+        final long startedAt = System.currentTimeMillis();
+        final ScheduledTask progressTask = plugin.getProxy().getScheduler().schedule(plugin, () -> {
+            long seconds = (System.currentTimeMillis() - startedAt) / 1000;
+            for (UUID uuid : players) {
+                ProxiedPlayer waitingPlayer = plugin.getProxy().getPlayer(uuid);
+                if (waitingPlayer != null && plugin.getServerManager().getAdmission().getQueuePosition(server) == 0) {
+                    waitingPlayer.sendMessage(new ComponentBuilder("Still starting " + server.getServerName() + " (" + seconds + "s)...").color(ChatColor.GRAY).create());
+                }
+            }
+        }, progressIntervalSeconds, progressIntervalSeconds, TimeUnit.SECONDS);
+
+        plugin.getServerManager().startServer(server).whenComplete((result, error) -> finish(server, players, progressTask, result, error));
+        sendQueuePosition(player, server);
+    }
+
+    /**
+     * Whether players are waiting to be sent to the server once it is up.
+     */
+    public boolean hasWaiters(PlayerServer server) {
+        Set<UUID> players = waiting.get(server.getId());
+        return players != null && !players.isEmpty();
+    }
+
+    private void finish(PlayerServer server, Set<UUID> players, ScheduledTask progressTask, StartResult result, Throwable error) {
+        ServerInfo target = plugin.getProxy().getServerInfo(server.getServerName());
+        boolean ready = error == null && result.isSuccess() && target != null;
+
+        // A crash during boot is retried by CrashRecovery; keep everyone waiting for that attempt
+        CompletableFuture<StartResult> restart = ready ? null : plugin.getServerManager().getRecovery().getPendingRestart(server);
+        if (restart != null) {
+            for (UUID uuid : players) {
+                ProxiedPlayer waitingPlayer = plugin.getProxy().getPlayer(uuid);
+                if (waitingPlayer != null) {
+                    waitingPlayer.sendMessage(new ComponentBuilder(server.getServerName() + " crashed while starting, trying again...").color(ChatColor.YELLOW).create());
+                }
+            }
+            restart.whenComplete((restarted, restartError) -> finish(server, players, progressTask, restarted, restartError));
+            return;
+        }
+
+        progressTask.cancel();
+        Set<UUID> forward;
+        synchronized (waiting) {
+            forward = waiting.remove(server.getId());
+        }
+        if (!ready) {
+            plugin.getLogger().warning("Start on connect failed for " + server.getServerName() + ": " + (error != null ? error : result));
+        }
+        for (UUID uuid : forward) {
+            ProxiedPlayer waitingPlayer = plugin.getProxy().getPlayer(uuid);
+            if (waitingPlayer == null || !waitingPlayer.isConnected()) {
+                continue;
+            }
+            if (ready) {
+                waitingPlayer.connect(target);
+            } else {
+                waitingPlayer.sendMessage(new ComponentBuilder("Failed to start " + server.getServerName() + ". Please try again later.").color(ChatColor.RED).create());
+            }
+        }
+    }
+
+    private void sendQueuePosition(ProxiedPlayer player, PlayerServer server) {
+        int position = plugin.getServerManager().getAdmission().addWaiter(server, player.getUniqueId());
+        if (position > 0) {
+            player.sendMessage(new ComponentBuilder("The host is full, the server is number " + position + " in the start queue.").color(ChatColor.YELLOW).create());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.playerservers;
+
+public class StartResult {
+    public enum Status {
+        READY,
+        ALREADY_RUNNING,
+        FAILED,
+        TIMED_OUT
+    }
+
+    private final Status status;
+    private final long elapsedMillis;
+    private final String message;
+
+    private StartResult(Status status, long elapsedMillis, String message) {
+        this.status = status;
+        this.elapsedMillis = elapsedMillis;
+        this.message = message;
+    }
+
+    public static StartResult ready(long elapsedMillis) {
+        return new StartResult(Status.READY, elapsedMillis, "Server is ready");
+    }
+
+    public static StartResult alreadyRunning() {
+        return new StartResult(Status.ALREADY_RUNNING, 0, "Server is already running");
+    }
+
+    public static StartResult failed(long elapsedMillis, String message) {
+        return new StartResult(Status.FAILED, elapsedMillis, message);
+    }
+
+    public static StartResult timedOut(long elapsedMillis) {
+        return new StartResult(Status.TIMED_OUT, elapsedMillis, "Server did not become ready in time");
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.READY || status == Status.ALREADY_RUNNING;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return status + " after " + elapsedMillis + "ms: " + message;
+    }
+}
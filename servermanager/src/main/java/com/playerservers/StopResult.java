@@ -0,0 +1,52 @@
+package com.playerservers;
+
+public class StopResult {
+    public enum Status {
+        ALREADY_STOPPED,
+        STOPPED,
+        TERMINATED,
+        KILLED
+    }
+
+    private final Status status;
+    private final long elapsedMillis;
+    private final int exitCode;
+
+    private StopResult(Status status, long elapsedMillis, int exitCode) {
+        this.status = status;
+        this.elapsedMillis = elapsedMillis;
+        this.exitCode = exitCode;
+    }
+
+    public static StopResult alreadyStopped() {
+        return new StopResult(Status.ALREADY_STOPPED, 0, 0);
+    }
+
+    public static StopResult of(Status status, long elapsedMillis, int exitCode) {
+        return new StopResult(status, elapsedMillis, exitCode);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * True if the server shut down through its own stop command and had the chance to save worlds.
+     */
+    public boolean isClean() {
+        return status == Status.STOPPED || status == Status.ALREADY_STOPPED;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public String toString() {
+        return status + " after " + elapsedMillis + "ms (exit code " + exitCode + ")";
+    }
+}
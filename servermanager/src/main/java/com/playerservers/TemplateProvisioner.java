@@ -0,0 +1,229 @@
+package com.playerservers;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds server directories from a template without duplicating data that servers never write.
+ * Where the filesystem supports reflinks the whole template is cloned copy-on-write. Otherwise
+ * files matching the link patterns (jars, libraries) are hardlinked and everything else is copied.
+ */
+public class TemplateProvisioner {
+    public static final List<String> DEFAULT_LINK_PATTERNS = Arrays.asList(
+            "*.jar", "libraries/**", "versions/**", "cache/**", "plugins/*.jar");
+
+    public enum Mode {
+        AUTO,
+        REFLINK,
+        LINK,
+        COPY
+    }
+
+    private final Logger logger;
+    private final CopyEngine copyEngine;
+    private final Mode mode;
+    private final List<PathMatcher> linkMatchers;
+    private final Map<FileStore, Boolean> reflinkSupport = new ConcurrentHashMap<>();
+
+    public TemplateProvisioner(Logger logger, CopyEngine copyEngine, Mode mode, List<String> linkPatterns) {
+        this.logger = logger;
+        this.copyEngine = copyEngine;
+        this.mode = mode;
+        this.linkMatchers = new ArrayList<>();
+        for (String pattern : linkPatterns.isEmpty() ? DEFAULT_LINK_PATTERNS : linkPatterns) {
+            linkMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    public static Mode parseMode(String value) {
+        try {
+            return Mode.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Mode.AUTO;
+        }
+    }
+
+    public Result provision(Path template, Path target) throws IOException {
+        return provision(template, target, null);
+    }
+
+    public Result provision(Path template, Path target, CopyEngine.ProgressListener listener) throws IOException {
+        Files.createDirectories(target);
+
+        if ((mode == Mode.AUTO || mode == Mode.REFLINK) && supportsReflink(target)) {
+            if (cloneTree(template, target)) {
+                return new Result(0, 0, 1, 0, 0);
+            }
+            logger.warning("Reflink clone of " + template + " failed, falling back to linking");
+        }
+
+        final boolean link = mode != Mode.COPY;
+        final long[] linked = new long[1];
+        final List<CopyEngine.FileCopy> copies = new ArrayList<>();
+        Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(template.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = template.relativize(file);
+                Path targetFile = target.resolve(relative.toString());
+                if (link && isImmutable(relative) && linkOrCopy(file, targetFile)) {
+                    linked[0]++;
+                } else {
+                    copies.add(new CopyEngine.FileCopy(file, targetFile, attrs.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Files the server may write are copied in parallel
+        CopyEngine.Stats copied = copyEngine.copyFiles(copies, listener);
+        return new Result(linked[0], copied.getFiles(), 0, copied.getBytes(), copied.getElapsedMillis());
+    }
+
+    /**
+     * Hardlinks a single immutable file, copying it instead when linking is not possible (for
+     * example across filesystems). Returns true if a link was created.
+     *
+     * The template file's permissions are left alone, since a link shares them and making it
+     * read-only would lock the operator out of their own template. A linked file is shared with the
+     * template and every other server, so template jars should be updated by moving a new file
+     * into place rather than overwriting the existing one.
+     */
+    public boolean linkOrCopy(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            return false;
+        }
+    }
+
+    public boolean isImmutable(Path relative) {
+        for (PathMatcher matcher : linkMatchers) {
+            if (matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean supportsReflink(Path target) {
+        FileStore store;
+        try {
+            store = Files.getFileStore(target);
+        } catch (IOException e) {
+            return false;
+        }
+        return reflinkSupport.computeIfAbsent(store, s -> probeReflink(target));
+    }
+
+    private boolean probeReflink(Path dir) {
+        Path probe = dir.resolve(".reflink-probe");
+        Path clone = dir.resolve(".reflink-probe-clone");
+        try {
+            Files.write(probe, new byte[]{0});
+            return runCp(probe.toString(), clone.toString());
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(probe);
+                Files.deleteIfExists(clone);
+            } catch (IOException ignored) {
+                // Best effort cleanup of the probe files
+            }
+        }
+    }
+
+    private boolean cloneTree(Path template, Path target) {
+        return runCp(template.toString() + "/.", target.toString());
+    }
+
+    private boolean runCp(String source, String target) {
+        try {
+            Process process = new ProcessBuilder("cp", "-a", "--reflink=always", source, target)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(5, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Interrupted while cloning " + source, e);
+            return false;
+        }
+    }
+
+    public static class Result {
+        private final long linkedFiles;
+        private final long copiedFiles;
+        private final long clonedTrees;
+        private final long copiedBytes;
+        private final long copyMillis;
+
+        public Result(long linkedFiles, long copiedFiles, long clonedTrees, long copiedBytes, long copyMillis) {
+            this.linkedFiles = linkedFiles;
+            this.copiedFiles = copiedFiles;
+            this.clonedTrees = clonedTrees;
+            this.copiedBytes = copiedBytes;
+            this.copyMillis = copyMillis;
+        }
+
+        public long getLinkedFiles() {
+            return linkedFiles;
+        }
+
+        public long getCopiedFiles() {
+            return copiedFiles;
+        }
+
+        public long getClonedTrees() {
+            return clonedTrees;
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        public long getCopyMillis() {
+            return copyMillis;
+        }
+
+        @Override
+        public String toString() {
+            if (clonedTrees > 0) {
+                return "reflink clone";
+            }
+            return linkedFiles + " linked, " + copiedFiles + " copied ("
+                    + new CopyEngine.Stats(copiedFiles, copiedBytes, copyMillis) + ")";
+        }
+    }
+}
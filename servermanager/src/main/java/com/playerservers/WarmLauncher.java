@@ -0,0 +1,72 @@
+package com.playerservers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarFile;
+
+/**
+ * Entry point for warm spare server JVMs. It loads the server jar and resolves its main class up
+ * front, prints {@link #READY_LINE} and then waits on stdin for a {@code BIND <port>} line. By the
+ * time the line arrives the proxy has moved the player's server files into this JVM's working
+ * directory, so the server main is invoked exactly as a cold start would be.
+ *
+ * A spare only saves JVM startup and opening the jar. Paper's own boot (the patch check, loading
+ * the server classes, loading the worlds) still runs after the claim. Paperclip works in the
+ * working directory and loads the server through a class loader of its own, and the working
+ * directory only holds the player's files once the spare is bound, so none of it can run earlier.
+ *
+ * This class runs inside the child JVM and must only depend on the JDK.
+ */
+public final class WarmLauncher {
+    public static final String READY_LINE = "WARM_READY";
+    public static final String BIND_COMMAND = "BIND";
+
+    private WarmLauncher() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: WarmLauncher <server jar>");
+            System.exit(2);
+        }
+
+        File serverJar = new File(args[0]);
+        String mainClassName;
+        try (JarFile jar = new JarFile(serverJar)) {
+            mainClassName = jar.getManifest().getMainAttributes().getValue("Main-Class");
+        }
+
+        ClassLoader loader = new URLClassLoader(new URL[]{serverJar.toURI().toURL()}, WarmLauncher.class.getClassLoader());
+        Method main = Class.forName(mainClassName, true, loader).getMethod("main", String[].class);
+
+        System.out.println(READY_LINE);
+        System.out.flush();
+
+        // Read byte by byte so nothing after the bind line is consumed before the server owns stdin
+        String line = readLine(System.in);
+        if (line == null || !line.startsWith(BIND_COMMAND + " ")) {
+            // The proxy went away or retired this spare
+            System.exit(0);
+        }
+
+        String port = line.substring(BIND_COMMAND.length() + 1).trim();
+        Thread.currentThread().setContextClassLoader(loader);
+        main.invoke(null, (Object) new String[]{"--nogui", "--port", port});
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return sb.toString().trim();
+            }
+            sb.append((char) b);
+        }
+        return sb.length() > 0 ? sb.toString().trim() : null;
+    }
+}
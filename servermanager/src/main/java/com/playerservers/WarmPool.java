@@ -0,0 +1,320 @@
+package com.playerservers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Pool of warm spare JVMs for one server template. Spares run {@link WarmLauncher} in an empty
+ * slot directory. Claiming a spare moves the player's server files into the slot and tells the
+ * launcher which port to bind; when the server exits the files are moved back.
+ */
+public class WarmPool {
+    private static final String OWNER_FILE = ".owner";
+
+    private final PlayerServerManager plugin;
+    private final String templateName;
+    private final Path slotsDir;
+    private final List<String> launchCommand;
+    private final int minSize;
+    private final int maxSize;
+    private final Deque<Spare> spares = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger booting = new AtomicInteger();
+    private final AtomicInteger slotCounter = new AtomicInteger();
+    private final AtomicInteger joinsThisWindow = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile double joinsPerMinute;
+    private volatile int targetSize;
+    private volatile boolean shutdown;
+    private volatile BooleanSupplier capacityCheck;
+
+    public WarmPool(PlayerServerManager plugin, String templateName, Path slotsDir, List<String> launchCommand,
+                    int minSize, int maxSize) {
+        this.plugin = plugin;
+        this.templateName = templateName;
+        this.slotsDir = slotsDir;
+        this.launchCommand = launchCommand;
+        this.minSize = minSize;
+        this.maxSize = Math.max(minSize, maxSize);
+        this.targetSize = minSize;
+    }
+
+    public void start(long refillIntervalSeconds) {
+        recoverSlots();
+        refill();
+        plugin.getProxy().getScheduler().schedule(plugin, this::tick, refillIntervalSeconds, refillIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes a ready spare out of the pool, or returns null on a miss. A refill is triggered either way.
+     */
+    public Spare claim() {
+        joinsThisWindow.incrementAndGet();
+        Spare spare;
+        while ((spare = spares.pollFirst()) != null) {
+            if (spare.process.isAlive()) {
+                hits.incrementAndGet();
+                plugin.getProxy().getScheduler().runAsync(plugin, this::refill);
+                return spare;
+            }
+            deleteSlot(spare.slotDir);
+        }
+        misses.incrementAndGet();
+        plugin.getProxy().getScheduler().runAsync(plugin, this::refill);
+        return null;
+    }
+
+    /**
+     * Moves the server's files into the spare's working directory and hands it the port. On failure
+     * the files are moved back, the spare is discarded and the caller should fall back to a cold start.
+     */
+    public boolean bind(Spare spare, Path serverDir, String serverName, int port) {
+        List<Path> moved = new ArrayList<>();
+        try {
+            Files.write(spare.slotDir.resolve(OWNER_FILE), serverName.getBytes(StandardCharsets.UTF_8));
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(serverDir)) {
+                for (Path entry : entries) {
+                    Path target = spare.slotDir.resolve(entry.getFileName());
+                    Files.move(entry, target, StandardCopyOption.ATOMIC_MOVE);
+                    moved.add(target);
+                }
+            }
+
+            OutputStream stdin = spare.process.getOutputStream();
+            stdin.write((WarmLauncher.BIND_COMMAND + " " + port + "\n").getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to bind warm spare to " + serverName + ", falling back to cold start", e);
+            for (Path target : moved) {
+                try {
+                    Files.move(target, serverDir.resolve(target.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException moveBack) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to move " + target + " back to " + serverDir, moveBack);
+                }
+            }
+            spare.process.destroyForcibly();
+            deleteSlot(spare.slotDir);
+            return false;
+        }
+    }
+
+    /**
+     * Moves a finished server's files from its slot back into its own directory and removes the slot.
+     */
+    public void release(Path slotDir, Path serverDir) {
+        try {
+            Files.createDirectories(serverDir);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(slotDir)) {
+                for (Path entry : entries) {
+                    if (entry.getFileName().toString().equals(OWNER_FILE)) {
+                        continue;
+                    }
+                    Files.move(entry, serverDir.resolve(entry.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            deleteSlot(slotDir);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to move server files from " + slotDir + " back to " + serverDir, e);
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        Spare spare;
+        while ((spare = spares.pollFirst()) != null) {
+            // Closing stdin makes the launcher exit on its own
+            try {
+                spare.process.getOutputStream().close();
+            } catch (IOException ignored) {
+                spare.process.destroy();
+            }
+            deleteSlot(spare.slotDir);
+        }
+    }
+
+    private void tick() {
+        // Exponentially weighted join rate drives the target size between min and max
+        int joins = joinsThisWindow.getAndSet(0);
+        long intervalSeconds = Math.max(1, plugin.getConfig().getLong("server.warm_pool.refill_interval_seconds", 30));
+        double rate = joins * (60.0 / intervalSeconds);
+        joinsPerMinute = joinsPerMinute * 0.7 + rate * 0.3;
+        targetSize = (int) Math.max(minSize, Math.min(maxSize, Math.ceil(joinsPerMinute)));
+
+        spares.removeIf(spare -> {
+            if (!spare.process.isAlive()) {
+                deleteSlot(spare.slotDir);
+                return true;
+            }
+            return false;
+        });
+
+        // Retire surplus spares once demand drops
+        while (spares.size() > targetSize) {
+            Spare spare = spares.pollLast();
+            if (spare == null) {
+                break;
+            }
+            spare.process.destroy();
+            deleteSlot(spare.slotDir);
+        }
+
+        refill();
+    }
+
+    private synchronized void refill() {
+        while (!shutdown && spares.size() + booting.get() < targetSize
+                && (capacityCheck == null || capacityCheck.getAsBoolean())) {
+            spawnSpare();
+        }
+    }
+
+    private void spawnSpare() {
+        Path slotDir = slotsDir.resolve(templateName + "-" + slotCounter.incrementAndGet());
+        try {
+            Files.createDirectories(slotDir);
+            ProcessBuilder pb = new ProcessBuilder(launchCommand);
+            pb.directory(slotDir.toFile());
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+            booting.incrementAndGet();
+
+            plugin.getProxy().getScheduler().runAsync(plugin, () -> {
+                try {
+                    String line;
+                    while ((line = readLine(process.getInputStream())) != null) {
+                        if (line.equals(WarmLauncher.READY_LINE)) {
+                            spares.addLast(new Spare(process, slotDir));
+                            return;
+                        }
+                    }
+                    plugin.getLogger().warning("Warm spare in " + slotDir + " exited before it was ready");
+                    deleteSlot(slotDir);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Error reading warm spare output in " + slotDir, e);
+                    process.destroyForcibly();
+                    deleteSlot(slotDir);
+                } finally {
+                    booting.decrementAndGet();
+                }
+            });
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to start warm spare for template " + templateName, e);
+            deleteSlot(slotDir);
+        }
+    }
+
+    private void recoverSlots() {
+        if (!Files.isDirectory(slotsDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> slots = Files.newDirectoryStream(slotsDir)) {
+            for (Path slotDir : slots) {
+                Path ownerFile = slotDir.resolve(OWNER_FILE);
+                if (Files.exists(ownerFile)) {
+                    // The proxy went down while this slot was bound to a player server
+                    String owner = new String(Files.readAllBytes(ownerFile), StandardCharsets.UTF_8).trim();
+                    plugin.getLogger().info("Recovering files of " + owner + " from warm slot " + slotDir);
+                    release(slotDir, slotsDir.getParent().resolve(owner));
+                } else {
+                    deleteSlot(slotDir);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to recover warm pool slots in " + slotsDir, e);
+        }
+    }
+
+    private void deleteSlot(Path slotDir) {
+        try (Stream<Path> paths = Files.walk(slotDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to delete warm slot " + slotDir, e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return sb.toString().trim();
+            }
+            sb.append((char) b);
+        }
+        return sb.length() > 0 ? sb.toString().trim() : null;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public int getSize() {
+        return spares.size();
+    }
+
+    /**
+     * Spares that are ready or still booting, all of which hold host memory.
+     */
+    public int getSpareCount() {
+        return spares.size() + booting.get();
+    }
+
+    /**
+     * Refills only spawn spares while the check allows it, e.g. while the host has capacity left.
+     */
+    public void setCapacityCheck(BooleanSupplier capacityCheck) {
+        this.capacityCheck = capacityCheck;
+    }
+
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getJoinsPerMinute() {
+        return joinsPerMinute;
+    }
+
+    public static class Spare {
+        private final Process process;
+        private final Path slotDir;
+
+        private Spare(Process process, Path slotDir) {
+            this.process = process;
+            this.slotDir = slotDir;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        public Path getSlotDir() {
+            return slotDir;
+        }
+    }
+}
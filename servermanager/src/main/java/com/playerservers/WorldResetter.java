@@ -0,0 +1,234 @@
+package com.playerservers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Puts a server directory back into the state of its template by rewriting only what differs.
+ * Files that are still the template's (same inode, or same size and modification time) are left
+ * alone. Region files that were written are first compared by their location and timestamp
+ * tables, which change whenever Minecraft saves a chunk, so most explored regions are replaced
+ * after reading 8 KiB; anything else is compared by content hash. Only files that differ are
+ * copied again. Files and directories the template doesn't have are removed, except those
+ * matching the keep patterns, such as the server jar and libraries linked in at startup.
+ * The work done scales with how much of the world was played in, not with its size.
+ */
+public class WorldResetter {
+    public static final List<String> DEFAULT_KEEP_PATTERNS = Arrays.asList(
+            "*.jar", "libraries", "versions", "cache", "plugins", "logs");
+
+    private final Logger logger;
+    private final TemplateProvisioner provisioner;
+    private final CopyEngine copyEngine;
+    private final DirectoryReaper reaper;
+    private final List<PathMatcher> keepMatchers;
+
+    public WorldResetter(Logger logger, TemplateProvisioner provisioner, CopyEngine copyEngine,
+                         DirectoryReaper reaper, List<String> keepPatterns) {
+        this.logger = logger;
+        this.provisioner = provisioner;
+        this.copyEngine = copyEngine;
+        this.reaper = reaper;
+        this.keepMatchers = new ArrayList<>();
+        for (String pattern : keepPatterns.isEmpty() ? DEFAULT_KEEP_PATTERNS : keepPatterns) {
+            keepMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+    }
+
+    /**
+     * Resets target to template. The server using target must be stopped.
+     */
+    public Result reset(Path template, Path target) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        if (!Files.isDirectory(target)) {
+            TemplateProvisioner.Result provisioned = provisioner.provision(template, target);
+            logger.info("Provisioned " + target.getFileName() + " from scratch: " + provisioned);
+            return new Result(0, provisioned.getLinkedFiles() + provisioned.getCopiedFiles(), 0,
+                    provisioned.getCopiedBytes(), System.currentTimeMillis() - startedAt);
+        }
+
+        Set<Path> templatePaths = new HashSet<>();
+        List<CopyEngine.FileCopy> copies = new ArrayList<>();
+        long[] counts = new long[2];
+        Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path relative = template.relativize(dir);
+                templatePaths.add(relative);
+                Path targetDir = target.resolve(relative.toString());
+                if (!Files.isDirectory(targetDir, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.deleteIfExists(targetDir);
+                    Files.createDirectories(targetDir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = template.relativize(file);
+                templatePaths.add(relative);
+                Path targetFile = target.resolve(relative.toString());
+                if (isUnchanged(file, attrs, targetFile)) {
+                    counts[0]++;
+                    return FileVisitResult.CONTINUE;
+                }
+                // Never write through a link that may be shared with the template or other servers
+                if (Files.isDirectory(targetFile, LinkOption.NOFOLLOW_LINKS)) {
+                    reaper.trash(targetFile);
+                } else {
+                    Files.deleteIfExists(targetFile);
+                }
+                if (provisioner.isImmutable(relative) && provisioner.linkOrCopy(file, targetFile)) {
+                    counts[1]++;
+                } else {
+                    copies.add(new CopyEngine.FileCopy(file, targetFile, attrs.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        long[] removed = new long[1];
+        Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path relative = target.relativize(dir);
+                if (templatePaths.contains(relative)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!isKept(relative)) {
+                    // Whole dimensions or folders players created; the reaper deletes them in the background
+                    reaper.trash(dir);
+                    removed[0]++;
+                }
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = target.relativize(file);
+                if (!templatePaths.contains(relative) && !isKept(relative)) {
+                    Files.deleteIfExists(file);
+                    removed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+
+        CopyEngine.Stats copied = copyEngine.copyFiles(copies, null);
+        return new Result(counts[0], counts[1] + copied.getFiles(), removed[0], copied.getBytes(),
+                System.currentTimeMillis() - startedAt);
+    }
+
+    private boolean isUnchanged(Path file, BasicFileAttributes attrs, Path targetFile) throws IOException {
+        BasicFileAttributes targetAttrs;
+        try {
+            targetAttrs = Files.readAttributes(targetFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!targetAttrs.isRegularFile() || targetAttrs.size() != attrs.size()) {
+            return false;
+        }
+        if (Files.isSameFile(file, targetFile) || targetAttrs.lastModifiedTime().equals(attrs.lastModifiedTime())) {
+            return true;
+        }
+
+        if (RegionFile.isRegionFile(file, attrs.size())) {
+            // Any chunk saved since the copy changes the header, so most played regions are caught here
+            try (FileChannel templateChannel = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel targetChannel = FileChannel.open(targetFile, StandardOpenOption.READ)) {
+                if (!RegionFile.readHeader(templateChannel).hasSameChunks(RegionFile.readHeader(targetChannel))) {
+                    return false;
+                }
+            }
+        }
+        boolean same;
+        try {
+            same = SharedJarCache.sha256(file).equals(SharedJarCache.sha256(targetFile));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        if (same) {
+            // Written back unchanged; matching times let the next reset skip it without reading
+            Files.setLastModifiedTime(targetFile, FileTime.fromMillis(attrs.lastModifiedTime().toMillis()));
+        }
+        return same;
+    }
+
+    private boolean isKept(Path relative) {
+        for (PathMatcher matcher : keepMatchers) {
+            if (matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Result {
+        private final long unchangedFiles;
+        private final long restoredFiles;
+        private final long removedEntries;
+        private final long copiedBytes;
+        private final long elapsedMillis;
+
+        public Result(long unchangedFiles, long restoredFiles, long removedEntries, long copiedBytes, long elapsedMillis) {
+            this.unchangedFiles = unchangedFiles;
+            this.restoredFiles = restoredFiles;
+            this.removedEntries = removedEntries;
+            this.copiedBytes = copiedBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getUnchangedFiles() {
+            return unchangedFiles;
+        }
+
+        public long getRestoredFiles() {
+            return restoredFiles;
+        }
+
+        public long getRemovedEntries() {
+            return removedEntries;
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return unchangedFiles + " unchanged, " + restoredFiles + " restored (" + (copiedBytes >> 20) + " MB), "
+                    + removedEntries + " removed in " + elapsedMillis + "ms";
+        }
+    }
+}
@@ -30,6 +30,13 @@ public class PlayerStatistics {
         
         initializeDatabase();
         startStatisticsTracker();
+        
+        // Count the automatic restarts the server manager performs after crashes and OOM kills
+        plugin.getServerManager().getRecovery().addListener(this::recordRestart);
+        
+        // CPU, memory, players and disk usage measured by the proxy; they also feed the peak values
+        plugin.getServerManager().getSampler().addListener(this::updateResourceUsage);
+        plugin.getServerManager().getDiskUsage().addListener(this::updateDiskUsage);
     }
 
     private void initializeDatabase() {
@@ -60,8 +67,19 @@ public class PlayerStatistics {
                 )
             """;
             
+            String createRestartTable = """
+                CREATE TABLE IF NOT EXISTS restart_history (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    uuid VARCHAR(36),
+                    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    reason VARCHAR(32),
+                    FOREIGN KEY (uuid) REFERENCES player_statistics(uuid)
+                )
+            """;
+            
             conn.createStatement().execute(createTable);
             conn.createStatement().execute(createHistoryTable);
+            conn.createStatement().execute(createRestartTable);
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to initialize statistics database", e);
         }
@@ -189,6 +207,7 @@ public class PlayerStatistics {
         summary.put("currentStatus", stats.getCurrentStatus());
         summary.put("currentPlayers", stats.getCurrentPlayers());
         summary.put("currentTPS", stats.getCurrentTPS());
+        summary.put("diskUsage", stats.getCurrentDiskUsage());
         
         return summary;
     }
@@ -199,6 +218,30 @@ public class PlayerStatistics {
         updateStatistics(uuid, stats);
     }
 
+    /**
+     * Records an automatic restart together with why the server went down (CRASH, OOM_KILLED).
+     */
+    public void recordRestart(UUID uuid, String reason) {
+        recordRestart(uuid);
+        
+        try (Connection conn = databaseManager.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("INSERT INTO restart_history (uuid, reason) VALUES (?, ?)");
+            stmt.setString(1, uuid.toString());
+            stmt.setString(2, reason);
+            stmt.execute();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to record restart", e);
+        }
+    }
+
+    /**
+     * Updates usage measured outside the server, such as by the proxy's ResourceSampler, keeping the
+     * last TPS the server itself reported.
+     */
+    public void updateResourceUsage(UUID uuid, double cpuUsage, long memoryUsage, int playerCount) {
+        updateResourceUsage(uuid, cpuUsage, memoryUsage, playerCount, getPlayerStats(uuid).getCurrentTPS());
+    }
+
     public void updateResourceUsage(UUID uuid, double cpuUsage, long memoryUsage, 
                                   int playerCount, double tps) {
         PlayerStats stats = getPlayerStats(uuid);
@@ -216,6 +259,13 @@ public class PlayerStatistics {
         }
     }
 
+    /**
+     * Stores the disk space the player's server currently uses, as reported by the disk usage tracker.
+     */
+    public void updateDiskUsage(UUID uuid, long bytes) {
+        getPlayerStats(uuid).setCurrentDiskUsage(bytes);
+    }
+
     public void cleanup() {
         // Save all cached statistics before shutdown
         for (Map.Entry<UUID, PlayerStats> entry : statsCache.entrySet()) {
@@ -18,6 +18,7 @@ public class PlayerStats {
     private final AtomicInteger currentPlayers;
     private final AtomicReference<Double> currentTPS;
     private final AtomicReference<String> currentStatus;
+    private final AtomicLong currentDiskUsage;
     
     // Uptime tracking
     private long startTime;
@@ -42,6 +43,7 @@ public class PlayerStats {
         this.currentPlayers = new AtomicInteger(0);
         this.currentTPS = new AtomicReference<>(20.0);
         this.currentStatus = new AtomicReference<>("offline");
+        this.currentDiskUsage = new AtomicLong(0);
         
         this.startTime = System.currentTimeMillis();
         this.totalDowntime = 0;
@@ -133,6 +135,14 @@ public class PlayerStats {
         return currentTPS.get();
     }
 
+    public long getCurrentDiskUsage() {
+        return currentDiskUsage.get();
+    }
+
+    public void setCurrentDiskUsage(long bytes) {
+        currentDiskUsage.set(bytes);
+    }
+
     public String getCurrentStatus() {
         return currentStatus.get();
     }
@@ -87,6 +87,10 @@ public class StatisticsCommand extends Command implements TabExecutor {
             .append(df.format(summary.get("peakCpuUsage")) + "%").color(ChatColor.GREEN)
             .append("\n");
 
+        message.append("Disk Usage: ").color(ChatColor.YELLOW)
+            .append(formatMemory((Long) summary.get("diskUsage"))).color(ChatColor.GREEN)
+            .append("\n");
+
         // General stats
         message.append("Total Playtime: ").color(ChatColor.YELLOW)
             .append(formatTime((Long) summary.get("totalPlaytime"))).color(ChatColor.GREEN)
@@ -1,6 +1,8 @@
 package com.playerservers.features.worlds;
 
 import com.playerservers.PlayerServerPlugin;
+import com.playerservers.TemplateProvisioner;
+import com.playerservers.WorldResetter;
 import net.md_5.bungee.api.ChatColor;
 import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.config.ServerInfo;
@@ -9,9 +11,6 @@ import net.md_5.bungee.config.Configuration;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -25,6 +24,8 @@ public class ResourceWorldManager {
     private final boolean autoTeleport;
     private final String spawnWorld;
     private final boolean backupOldWorld;
+    private final boolean selectiveReset;
+    private final List<String> keepPatterns;
     private boolean isRegenerating = false;
 
     public ResourceWorldManager(PlayerServerPlugin plugin) {
@@ -37,6 +38,8 @@ public class ResourceWorldManager {
         this.autoTeleport = config.getBoolean("resource_world.auto_teleport", true);
         this.spawnWorld = config.getString("resource_world.spawn_world", "hub");
         this.backupOldWorld = config.getBoolean("resource_world.backup_old_world", false);
+        this.selectiveReset = config.getBoolean("resource_world.selective_reset", true);
+        this.keepPatterns = config.getStringList("resource_world.keep_patterns");
         
         if (config.getBoolean("resource_world.enabled", true)) {
             startRegenerationTask();
@@ -134,35 +137,28 @@ public class ResourceWorldManager {
         }
     }
 
-    private void deleteWorld() {
+    private void backupWorld() {
         File worldDir = new File(plugin.getDataFolder(), "servers/" + worldName);
+        if (!worldDir.isDirectory()) {
+            return;
+        }
         
-        if (backupOldWorld) {
-            File backupDir = new File(plugin.getDataFolder(), "backups/resource_worlds/" + 
-                                    System.currentTimeMillis());
-            try {
-                Files.move(worldDir.toPath(), backupDir.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to backup old resource world", e);
-            }
-        } else {
-            deleteDirectory(worldDir);
+        // Snapshots share chunks with the previous ones, so only what players changed is stored
+        try {
+            plugin.getServerManager().getBackups().backup(worldName, worldDir.toPath()).join();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to backup old resource world", e);
         }
     }
 
-    private void deleteDirectory(File directory) {
-        if (directory.exists()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        deleteDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                }
-            }
-            directory.delete();
+    private void deleteWorld() {
+        File worldDir = new File(plugin.getDataFolder(), "servers/" + worldName);
+        
+        // Renamed away at once so the template can be copied in; the files go in the background
+        try {
+            plugin.getServerManager().getReaper().trash(worldDir.toPath());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to delete old resource world", e);
         }
     }
 
@@ -171,31 +167,29 @@ public class ResourceWorldManager {
         File worldDir = new File(plugin.getDataFolder(), "servers/" + worldName);
         
         try {
-            copyDirectory(templateDir.toPath(), worldDir.toPath());
+            TemplateProvisioner.Result result = plugin.getServerManager().getProvisioner().provision(templateDir.toPath(), worldDir.toPath());
+            plugin.getLogger().info("Provisioned resource world from template: " + result);
         } catch (IOException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to copy world template", e);
         }
     }
 
-    private void copyDirectory(Path source, Path target) throws IOException {
-        if (!Files.exists(target)) {
-            Files.createDirectories(target);
-        }
+    private void resetWorld() {
+        File templateDir = new File(plugin.getDataFolder(), "templates/" + serverTemplate);
+        File worldDir = new File(plugin.getDataFolder(), "servers/" + worldName);
+        // Share the server manager's copy pool so the configured parallelism holds across both
+        WorldResetter resetter = new WorldResetter(plugin.getLogger(), plugin.getServerManager().getProvisioner(),
+            plugin.getServerManager().getCopyEngine(), plugin.getServerManager().getReaper(), keepPatterns);
         
-        Files.walk(source).forEach(sourcePath -> {
-            try {
-                Path targetPath = target.resolve(source.relativize(sourcePath));
-                if (Files.isDirectory(sourcePath)) {
-                    if (!Files.exists(targetPath)) {
-                        Files.createDirectories(targetPath);
-                    }
-                } else {
-                    Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                }
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to copy file: " + sourcePath, e);
-            }
-        });
+        try {
+            WorldResetter.Result result = resetter.reset(templateDir.toPath(), worldDir.toPath());
+            plugin.getLogger().info("Reset resource world to template: " + result);
+        } catch (IOException e) {
+            // A half-reset world must not be served; start over from a full copy
+            plugin.getLogger().log(Level.SEVERE, "Selective reset of resource world failed, recreating it", e);
+            deleteWorld();
+            copyTemplate();
+        }
     }
 
     private void startWorld() {
@@ -216,8 +210,15 @@ public class ResourceWorldManager {
             notifyPlayers();
             evacuateWorld();
             stopWorld();
-            deleteWorld();
-            copyTemplate();
+            if (backupOldWorld) {
+                backupWorld();
+            }
+            if (selectiveReset) {
+                resetWorld();
+            } else {
+                deleteWorld();
+                copyTemplate();
+            }
             startWorld();
             
             plugin.getLogger().info("Resource world regeneration complete!");
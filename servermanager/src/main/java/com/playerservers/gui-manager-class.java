@@ -100,6 +100,27 @@ public class GuiManager {
         }
     }
     
+    private void sendConsoleTail(ProxiedPlayer player, List<String> lines) {
+        if (player.getServer() == null) {
+            return;
+        }
+        
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(stream);
+            
+            out.writeUTF("CONSOLE_TAIL");
+            out.writeInt(lines.size());
+            for (String line : lines) {
+                out.writeUTF(line);
+            }
+            
+            player.getServer().sendData(CHANNEL_NAME, stream.toByteArray());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to send console output to player " + player.getName(), e);
+        }
+    }
+    
     public void handleGuiAction(ProxiedPlayer player, String action, String... args) {
         UUID playerUuid = player.getUniqueId();
         PlayerServer server = plugin.getPlayerServers().get(playerUuid);
@@ -115,12 +136,13 @@ public class GuiManager {
             case "START_SERVER":
                 if (!server.isRunning()) {
                     player.sendMessage(new ComponentBuilder("Starting your server...").color(ChatColor.YELLOW).create());
-                    boolean success = serverManager.startServer(server);
-                    if (success) {
-                        player.sendMessage(new ComponentBuilder("Server started successfully!").color(ChatColor.GREEN).create());
-                    } else {
-                        player.sendMessage(new ComponentBuilder("Failed to start server!").color(ChatColor.RED).create());
-                    }
+                    serverManager.startServer(server).thenAccept(result -> {
+                        if (result.isSuccess()) {
+                            player.sendMessage(new ComponentBuilder("Server started successfully!").color(ChatColor.GREEN).create());
+                        } else {
+                            player.sendMessage(new ComponentBuilder("Failed to start server: " + result.getMessage()).color(ChatColor.RED).create());
+                        }
+                    });
                 } else {
                     player.sendMessage(new ComponentBuilder("Your server is already running!").color(ChatColor.YELLOW).create());
                 }
@@ -129,12 +151,13 @@ public class GuiManager {
             case "STOP_SERVER":
                 if (server.isRunning()) {
                     player.sendMessage(new ComponentBuilder("Stopping your server...").color(ChatColor.YELLOW).create());
-                    boolean success = serverManager.stopServer(server);
-                    if (success) {
-                        player.sendMessage(new ComponentBuilder("Server stopped successfully!").color(ChatColor.GREEN).create());
-                    } else {
-                        player.sendMessage(new ComponentBuilder("Failed to stop server!").color(ChatColor.RED).create());
-                    }
+                    serverManager.stopServer(server).thenAccept(result -> {
+                        if (result.isClean()) {
+                            player.sendMessage(new ComponentBuilder("Server stopped successfully!").color(ChatColor.GREEN).create());
+                        } else {
+                            player.sendMessage(new ComponentBuilder("Server did not shut down cleanly and was terminated.").color(ChatColor.YELLOW).create());
+                        }
+                    });
                 } else {
                     player.sendMessage(new ComponentBuilder("Your server is not running!").color(ChatColor.YELLOW).create());
                 }
@@ -255,6 +278,12 @@ public class GuiManager {
                 String key = args[0];
                 String value = args[1];
                 
+                // The plan decides the server's resource limits, so only admins may change it
+                if (key.equals(ResourceLimits.PLAN_SETTING) && !player.hasPermission("playerserver.admin")) {
+                    player.sendMessage(new ComponentBuilder("Only administrators can change the plan of a server!").color(ChatColor.RED).create());
+                    return;
+                }
+                
                 player.sendMessage(new ComponentBuilder("Updating setting " + key + "...").color(ChatColor.YELLOW).create());
                 
                 boolean updateSuccess = serverManager.updateServerSetting(server, key, value);
@@ -265,6 +294,18 @@ public class GuiManager {
                 }
                 break;
                 
+            case "TAIL_CONSOLE":
+                int lines = 20;
+                if (args.length >= 1) {
+                    try {
+                        lines = Math.max(1, Math.min(200, Integer.parseInt(args[0])));
+                    } catch (NumberFormatException ignored) {
+                        // Keep the default
+                    }
+                }
+                sendConsoleTail(player, serverManager.tailConsole(server, lines));
+                break;
+                
             default:
                 plugin.getLogger().warning("Unknown GUI action: " + action);
                 break;
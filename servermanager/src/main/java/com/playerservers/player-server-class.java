@@ -13,6 +13,9 @@ public class PlayerServer {
     private String serverName;
     private int port;
     private boolean running;
+    private volatile long lastActive;
+    private volatile boolean frozen;
+    private String node;
     private List<UUID> operators;
     private List<String> plugins;
     private Map<String, String> settings;
@@ -55,6 +58,40 @@ public class PlayerServer {
     
     public void setRunning(boolean running) {
         this.running = running;
+        if (!running) {
+            // A process that exited can't stay suspended
+            this.frozen = false;
+        }
+    }
+    
+    /**
+     * Whether the server process is suspended with SIGSTOP. A frozen server is still running.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+    
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+    }
+    
+    /**
+     * Name of the worker node running this server, or null if it runs on the proxy host.
+     */
+    public String getNode() {
+        return node;
+    }
+    
+    public void setNode(String node) {
+        this.node = node;
+    }
+    
+    public long getLastActive() {
+        return lastActive;
+    }
+    
+    public void setLastActive(long lastActive) {
+        this.lastActive = lastActive;
     }
     
     public List<UUID> getOperators() {
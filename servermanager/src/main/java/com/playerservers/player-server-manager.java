@@ -22,9 +22,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
@@ -32,8 +37,12 @@ public class PlayerServerManager extends Plugin {
     private Configuration config;
     private Connection dbConnection;
     private Map<UUID, PlayerServer> playerServers = new HashMap<>();
+    private final Set<UUID> creatingServers = ConcurrentHashMap.newKeySet();
     private ServerManager serverManager;
     private GuiManager guiManager;
+    private PortAllocator portAllocator;
+    private JvmBenchmark jvmBenchmark;
+    private StartOnConnectListener startOnConnect;
 
     @Override
     public void onEnable() {
@@ -48,13 +57,42 @@ public class PlayerServerManager extends Plugin {
         
         // Initialize GUI manager
         guiManager = new GuiManager(this);
+        jvmBenchmark = new JvmBenchmark(this, config);
         
         // Register commands
         getProxy().getPluginManager().registerCommand(this, new ServerCommand(this));
         
+        // Start stopped player servers when someone connects to them directly
+        if (config.getBoolean("server.start_on_connect.enabled", true)) {
+            startOnConnect = new StartOnConnectListener(this);
+            getProxy().getPluginManager().registerListener(this, startOnConnect);
+        }
+        
         // Load existing servers from database
         loadExistingServers();
         
+        // Initialize port allocator from persisted leases
+        portAllocator = new PortAllocator(
+                this,
+                config.getInt("server.start_port", 25566),
+                config.getInt("server.max_port", 26000),
+                config.getString("server.host", "localhost"),
+                config.getBoolean("server.port_probe", false)
+        );
+        portAllocator.load();
+        
+        // Keep running state of servers on worker nodes in sync
+        serverManager.getNodes().startSync(config.getLong("server.nodes.sync_interval_seconds", 30));
+        
+        // Sample CPU and memory of local servers for their listeners, such as PlayerStatistics
+        serverManager.getSampler().start(config.getLong("server.metrics.sample_interval_seconds", 5));
+        
+        // Track disk usage of local servers for storage quotas
+        serverManager.getDiskUsage().start(config.getLong("server.disk_quota.flush_seconds", 10));
+        
+        // Back up every local server into the deduplicating repository
+        serverManager.getBackups().start(config.getLong("server.backups.interval_hours", 24));
+        
         // Start inactivity checker task
         getProxy().getScheduler().schedule(this, new InactivityChecker(), 1, 1, TimeUnit.MINUTES);
         
@@ -63,12 +101,20 @@ public class PlayerServerManager extends Plugin {
 
     @Override
     public void onDisable() {
-        // Save all servers state
-        for (PlayerServer server : playerServers.values()) {
-            if (server.isRunning()) {
-                serverManager.stopServer(server);
+        // Stop all running servers in parallel within the shutdown budget
+        Map<String, StopResult> results = serverManager.stopAll(
+                config.getInt("server.shutdown.parallelism", 8),
+                config.getLong("server.shutdown.budget_seconds", 90)
+        );
+        Map<StopResult.Status, Integer> outcomes = new EnumMap<>(StopResult.Status.class);
+        for (Map.Entry<String, StopResult> entry : results.entrySet()) {
+            outcomes.merge(entry.getValue().getStatus(), 1, Integer::sum);
+            if (!entry.getValue().isClean()) {
+                getLogger().warning("Server " + entry.getKey() + " did not stop cleanly: " + entry.getValue());
             }
         }
+        getLogger().info("Stopped " + results.size() + " servers: " + outcomes);
+        serverManager.shutdown();
         
         // Close database connection
         if (dbConnection != null) {
@@ -164,6 +210,27 @@ public class PlayerServerManager extends Plugin {
                     "setting_value TEXT NOT NULL, " +
                     "PRIMARY KEY (server_id, setting_key), " +
                     "FOREIGN KEY (server_id) REFERENCES servers(id) ON DELETE CASCADE)");
+            
+            // Create port_leases table
+            stmt.execute("CREATE TABLE IF NOT EXISTS port_leases (" +
+                    "port INTEGER PRIMARY KEY, " +
+                    "owner_uuid VARCHAR(36) NOT NULL, " +
+                    "leased_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            
+            // Create server_nodes table
+            stmt.execute("CREATE TABLE IF NOT EXISTS server_nodes (" +
+                    "server_id INTEGER PRIMARY KEY, " +
+                    "node VARCHAR(64) NOT NULL, " +
+                    "FOREIGN KEY (server_id) REFERENCES servers(id) ON DELETE CASCADE)");
+            
+            // Create plugin_store table
+            stmt.execute("CREATE TABLE IF NOT EXISTS plugin_store (" +
+                    "plugin_name VARCHAR(64) NOT NULL, " +
+                    "sha256 CHAR(64) NOT NULL, " +
+                    "version VARCHAR(64) NOT NULL, " +
+                    "is_current INTEGER NOT NULL DEFAULT 0, " +
+                    "imported_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "PRIMARY KEY (plugin_name, sha256))");
         }
     }
     
@@ -210,14 +277,23 @@ public class PlayerServerManager extends Plugin {
                     }
                 }
                 
+                // Load the worker node the server lives on
+                try (PreparedStatement nodeStmt = dbConnection.prepareStatement("SELECT node FROM server_nodes WHERE server_id = ?")) {
+                    nodeStmt.setInt(1, id);
+                    try (ResultSet nodeRs = nodeStmt.executeQuery()) {
+                        if (nodeRs.next()) {
+                            server.setNode(nodeRs.getString("node"));
+                        }
+                    }
+                }
+                
                 playerServers.put(playerUuid, server);
                 
                 // Register server with BungeeCord if not already registered
-                String serverAddress = config.getString("server.host", "localhost") + ":" + port;
                 if (!getProxy().getServers().containsKey(serverName)) {
                     ServerInfo serverInfo = getProxy().constructServerInfo(
                             serverName,
-                            new InetSocketAddress(config.getString("server.host", "localhost"), port),
+                            new InetSocketAddress(serverManager.getNodes().getAddress(server), port),
                             serverName + " - Owned by " + playerName,
                             false
                     );
@@ -232,8 +308,25 @@ public class PlayerServerManager extends Plugin {
         }
     }
     
+    /**
+     * Creates a player's server. Placement asks every worker node for its capacity and the template
+     * is copied, so call this off the command thread.
+     */
     public boolean createPlayerServer(ProxiedPlayer player) {
         UUID playerUuid = player.getUniqueId();
+        if (!creatingServers.add(playerUuid)) {
+            player.sendMessage(new ComponentBuilder("Your server is already being created.").color(ChatColor.RED).create());
+            return false;
+        }
+        try {
+            return provisionPlayerServer(player);
+        } finally {
+            creatingServers.remove(playerUuid);
+        }
+    }
+    
+    private boolean provisionPlayerServer(ProxiedPlayer player) {
+        UUID playerUuid = player.getUniqueId();
         
         // Check if player already has a server
         if (playerServers.containsKey(playerUuid)) {
@@ -241,10 +334,8 @@ public class PlayerServerManager extends Plugin {
             return false;
         }
         
-        // Find an available port
-        int basePort = config.getInt("server.start_port", 25566);
-        int maxPort = config.getInt("server.max_port", 26000);
-        int port = findAvailablePort(basePort, maxPort);
+        // Lease an available port
+        int port = portAllocator.allocate(playerUuid);
         
         if (port == -1) {
             player.sendMessage(new ComponentBuilder("No available server ports! Please contact an administrator.").color(ChatColor.RED).create());
@@ -266,6 +357,7 @@ public class PlayerServerManager extends Plugin {
             int affectedRows = stmt.executeUpdate();
             
             if (affectedRows == 0) {
+                portAllocator.release(port);
                 player.sendMessage(new ComponentBuilder("Failed to create server! Please try again later.").color(ChatColor.RED).create());
                 return false;
             }
@@ -275,13 +367,15 @@ public class PlayerServerManager extends Plugin {
                 if (generatedKeys.next()) {
                     serverId = generatedKeys.getInt(1);
                 } else {
+                    portAllocator.release(port);
                     player.sendMessage(new ComponentBuilder("Failed to create server! Please try again later.").color(ChatColor.RED).create());
                     return false;
                 }
             }
             
-            // Create PlayerServer object
+            // Create PlayerServer object and place it on the least-loaded node
             PlayerServer server = new PlayerServer(serverId, playerUuid, player.getName(), serverName, port);
+            serverManager.getNodes().assign(server, serverManager.getNodes().place(ResourceLimits.forServer(config, server).getRamMB()));
             
             // Add owner as operator
             server.addOperator(playerUuid);
@@ -316,7 +410,7 @@ public class PlayerServerManager extends Plugin {
             // Register server with BungeeCord
             ServerInfo serverInfo = getProxy().constructServerInfo(
                     serverName,
-                    new InetSocketAddress(config.getString("server.host", "localhost"), port),
+                    new InetSocketAddress(serverManager.getNodes().getAddress(server), port),
                     serverName + " - Owned by " + player.getName(),
                     false
             );
@@ -336,6 +430,9 @@ public class PlayerServerManager extends Plugin {
             
         } catch (SQLException e) {
             getLogger().log(Level.SEVERE, "Failed to create server for player " + player.getName(), e);
+            if (!playerServers.containsKey(playerUuid)) {
+                portAllocator.release(port);
+            }
             player.sendMessage(new ComponentBuilder("Failed to create server! Please try again later.").color(ChatColor.RED).create());
             return false;
         }
@@ -352,13 +449,9 @@ public class PlayerServerManager extends Plugin {
         
         PlayerServer server = playerServers.get(playerUuid);
         
-        // Stop the server if it's running
-        if (server.isRunning()) {
-            serverManager.stopServer(server);
-        }
-        
-        // Delete actual server files
-        serverManager.deleteServer(server);
+        // Stops the server if it's running and deletes its files once it has exited; the command
+        // returns right away and the port is only handed out again once the process is gone
+        CompletableFuture<Boolean> deleted = serverManager.deleteServer(server);
         
         // Unregister server from BungeeCord
         getProxy().getServers().remove(server.getServerName());
@@ -373,8 +466,9 @@ public class PlayerServerManager extends Plugin {
             return false;
         }
         
-        // Remove from memory
+        // Remove from memory and free the port
         playerServers.remove(playerUuid);
+        deleted.whenComplete((ignored, error) -> portAllocator.release(server.getPort()));
         
         player.sendMessage(new ComponentBuilder("Your server has been deleted!").color(ChatColor.GREEN).create());
         return true;
@@ -391,21 +485,32 @@ public class PlayerServerManager extends Plugin {
         
         PlayerServer server = playerServers.get(playerUuid);
         
-        // Start server if it's not running
+        // Update last active time
+        updateLastActiveTime(server);
+        
+        // Start server if it's not running, and connect once it is ready
         if (!server.isRunning()) {
             player.sendMessage(new ComponentBuilder("Starting your server, please wait...").color(ChatColor.YELLOW).create());
-            boolean success = serverManager.startServer(server);
-            if (!success) {
-                player.sendMessage(new ComponentBuilder("Failed to start your server! Please contact an administrator.").color(ChatColor.RED).create());
-                return false;
-            }
         }
         
-        // Update last active time
-        updateLastActiveTime(server);
+        serverManager.startServer(server).thenAccept(result -> {
+            if (!result.isSuccess()) {
+                getLogger().warning("Could not start server " + server.getServerName() + ": " + result);
+                player.sendMessage(new ComponentBuilder("Failed to start your server! Please contact an administrator.").color(ChatColor.RED).create());
+                return;
+            }
+            
+            // Connect to server
+            if (player.isConnected()) {
+                player.connect(getProxy().getServerInfo(server.getServerName()));
+            }
+        });
         
-        // Connect to server
-        player.connect(getProxy().getServerInfo(server.getServerName()));
+        // Tell the player where they are if the host is full; later changes are sent as they happen
+        int position = serverManager.getAdmission().addWaiter(server, playerUuid);
+        if (position > 0) {
+            player.sendMessage(new ComponentBuilder("The host is full, your server is number " + position + " in the start queue.").color(ChatColor.YELLOW).create());
+        }
         return true;
     }
     
@@ -418,8 +523,8 @@ public class PlayerServerManager extends Plugin {
             ServerInfo serverInfo = getProxy().getServerInfo(server.getServerName());
             boolean isOnline = server.isRunning();
             
-            ChatColor statusColor = isOnline ? ChatColor.GREEN : ChatColor.RED;
-            String status = isOnline ? "ONLINE" : "OFFLINE";
+            ChatColor statusColor = server.isFrozen() ? ChatColor.AQUA : isOnline ? ChatColor.GREEN : ChatColor.RED;
+            String status = server.isFrozen() ? "FROZEN" : isOnline ? "ONLINE" : "OFFLINE";
             
             player.sendMessage(new ComponentBuilder(server.getServerName())
                     .color(ChatColor.YELLOW)
@@ -452,24 +557,182 @@ public class PlayerServerManager extends Plugin {
         guiManager.openManageGui(player, server);
     }
     
-    private int findAvailablePort(int start, int max) {
-        // Get all used ports
-        for (int port = start; port <= max; port++) {
-            boolean used = false;
-            for (PlayerServer server : playerServers.values()) {
-                if (server.getPort() == port) {
-                    used = true;
-                    break;
+    public void showConsole(ProxiedPlayer player, String[] args) {
+        // Owners see their own server; admins may name any server: /server console [server] [lines]
+        PlayerServer server = playerServers.get(player.getUniqueId());
+        int lines = 20;
+        for (int i = 1; i < args.length; i++) {
+            try {
+                lines = Math.max(1, Math.min(200, Integer.parseInt(args[i])));
+            } catch (NumberFormatException e) {
+                if (!player.hasPermission("playerserver.admin")) {
+                    player.sendMessage(new ComponentBuilder("You can only view your own server's console!").color(ChatColor.RED).create());
+                    return;
                 }
+                server = findServerByName(args[i]);
             }
-            if (!used) {
-                return port;
+        }
+        
+        if (server == null) {
+            player.sendMessage(new ComponentBuilder("Server not found!").color(ChatColor.RED).create());
+            return;
+        }
+        
+        List<String> output = serverManager.tailConsole(server, lines);
+        player.sendMessage(new ComponentBuilder("--------- Console: " + server.getServerName() + " ---------").color(ChatColor.GOLD).create());
+        if (output.isEmpty()) {
+            player.sendMessage(new ComponentBuilder("No console output yet.").color(ChatColor.GRAY).create());
+        }
+        for (String line : output) {
+            player.sendMessage(new ComponentBuilder(line).color(ChatColor.WHITE).create());
+        }
+    }
+    
+    public PlayerServer findServerByName(String serverName) {
+        for (PlayerServer server : playerServers.values()) {
+            if (server.getServerName().equalsIgnoreCase(serverName)) {
+                return server;
             }
         }
-        return -1;
+        return null;
+    }
+    
+    public void showWarmPoolStats(ProxiedPlayer player) {
+        WarmPool pool = serverManager.getWarmPool();
+        if (pool == null) {
+            player.sendMessage(new ComponentBuilder("The warm pool is disabled.").color(ChatColor.YELLOW).create());
+            return;
+        }
+        
+        long hits = pool.getHits();
+        long misses = pool.getMisses();
+        long total = hits + misses;
+        String hitRate = total == 0 ? "n/a" : String.format("%.1f%%", hits * 100.0 / total);
+        
+        player.sendMessage(new ComponentBuilder("--------- Warm Pool (" + pool.getTemplateName() + ") ---------").color(ChatColor.GOLD).create());
+        player.sendMessage(new ComponentBuilder("Spares: ").color(ChatColor.YELLOW).append(pool.getSize() + " / " + pool.getTargetSize()).color(ChatColor.WHITE).create());
+        player.sendMessage(new ComponentBuilder("Hits: ").color(ChatColor.YELLOW).append(hits + " (" + hitRate + ")").color(ChatColor.WHITE).create());
+        player.sendMessage(new ComponentBuilder("Misses: ").color(ChatColor.YELLOW).append(String.valueOf(misses)).color(ChatColor.WHITE).create());
+        player.sendMessage(new ComponentBuilder("Joins/min: ").color(ChatColor.YELLOW).append(String.format("%.1f", pool.getJoinsPerMinute())).color(ChatColor.WHITE).create());
+    }
+    
+    public void showNodes(ProxiedPlayer player) {
+        NodeScheduler nodes = serverManager.getNodes();
+        player.sendMessage(new ComponentBuilder("--------- Worker Nodes ---------").color(ChatColor.GOLD).create());
+        if (nodes.isLocalEnabled()) {
+            AdmissionController admission = serverManager.getAdmission();
+            player.sendMessage(new ComponentBuilder(NodeScheduler.LOCAL).color(ChatColor.YELLOW)
+                    .append(" - " + admission.getCommittedMemoryMB() + " / " + admission.getMemoryBudgetMB() + " MB, "
+                            + admission.getFrozenCount() + " frozen").color(ChatColor.WHITE).create());
+        }
+        
+        // Capacity queries go over the network, so don't run them on the command thread
+        getProxy().getScheduler().runAsync(this, () -> {
+            for (String name : nodes.getNodeNames()) {
+                try {
+                    NodeClient.Capacity capacity = nodes.getNode(name).capacity();
+                    player.sendMessage(new ComponentBuilder(name).color(ChatColor.YELLOW)
+                            .append(" - " + capacity.getCommittedMB() + " / " + capacity.getBudgetMB() + " MB, " + capacity.getRunning() + " running").color(ChatColor.WHITE).create());
+                } catch (IOException e) {
+                    player.sendMessage(new ComponentBuilder(name).color(ChatColor.YELLOW).append(" - UNREACHABLE").color(ChatColor.RED).create());
+                }
+            }
+        });
+    }
+    
+    public void manageBackups(ProxiedPlayer player, String[] args) {
+        PlayerServer server = playerServers.get(player.getUniqueId());
+        if (server == null) {
+            player.sendMessage(new ComponentBuilder("You don't have a server! Use /server create to create one.").color(ChatColor.RED).create());
+            return;
+        }
+        if (serverManager.getNodes().isRemote(server)) {
+            player.sendMessage(new ComponentBuilder("Backups are not available for servers on worker nodes.").color(ChatColor.RED).create());
+            return;
+        }
+        BackupEngine backups = serverManager.getBackups();
+        
+        if (args.length >= 2 && args[1].equalsIgnoreCase("list")) {
+            List<BackupEngine.Snapshot> snapshots = backups.listSnapshots(server.getServerName());
+            player.sendMessage(new ComponentBuilder("--------- Backups: " + server.getServerName() + " ---------").color(ChatColor.GOLD).create());
+            if (snapshots.isEmpty()) {
+                player.sendMessage(new ComponentBuilder("No backups yet.").color(ChatColor.GRAY).create());
+            }
+            for (BackupEngine.Snapshot snapshot : snapshots) {
+                player.sendMessage(new ComponentBuilder(snapshot.getId()).color(ChatColor.YELLOW)
+                        .append(" - " + snapshot.getFileCount() + " files, " + (snapshot.getTotalBytes() >> 20) + " MB").color(ChatColor.WHITE).create());
+            }
+            return;
+        }
+        
+        if (args.length >= 4 && args[1].equalsIgnoreCase("restore")) {
+            String path = args[3];
+            player.sendMessage(new ComponentBuilder("Stopping your server and restoring " + path + " from backup " + args[2] + "...").color(ChatColor.YELLOW).create());
+            backups.restoreFile(server, args[2], path).whenComplete((ignored, error) -> {
+                if (error == null) {
+                    player.sendMessage(new ComponentBuilder("Restored " + path + ". Start your server to play on it.").color(ChatColor.GREEN).create());
+                } else {
+                    player.sendMessage(new ComponentBuilder("Failed to restore " + path + ": " + error.getMessage()).color(ChatColor.RED).create());
+                }
+            });
+            return;
+        }
+        
+        if (args.length >= 3 && args[1].equalsIgnoreCase("restore")) {
+            player.sendMessage(new ComponentBuilder("Stopping your server and restoring backup " + args[2] + "...").color(ChatColor.YELLOW).create());
+            backups.restore(server, args[2]).whenComplete((ignored, error) -> {
+                if (error == null) {
+                    player.sendMessage(new ComponentBuilder("Backup restored. Start your server to play on it.").color(ChatColor.GREEN).create());
+                } else {
+                    player.sendMessage(new ComponentBuilder("Failed to restore backup: " + error.getMessage()).color(ChatColor.RED).create());
+                }
+            });
+            return;
+        }
+        
+        player.sendMessage(new ComponentBuilder("Backing up your server...").color(ChatColor.YELLOW).create());
+        backups.backup(server).whenComplete((snapshot, error) -> {
+            if (error == null) {
+                player.sendMessage(new ComponentBuilder("Backup " + snapshot.getId() + " created.").color(ChatColor.GREEN).create());
+            } else {
+                player.sendMessage(new ComponentBuilder("Backup failed!").color(ChatColor.RED).create());
+            }
+        });
+    }
+    
+    public void managePlugins(ProxiedPlayer player, String[] args) {
+        PluginStore store = serverManager.getPluginStore();
+        if (args.length >= 3 && args[1].equalsIgnoreCase("upgrade")) {
+            String pluginName = args[2];
+            player.sendMessage(new ComponentBuilder("Upgrading " + pluginName + " on all servers...").color(ChatColor.YELLOW).create());
+            getProxy().getScheduler().runAsync(this, () -> {
+                int upgraded = serverManager.upgradePlugin(pluginName);
+                PluginStore.Version version = store.getCurrent(pluginName);
+                if (version == null) {
+                    player.sendMessage(new ComponentBuilder("Plugin " + pluginName + " is not in the plugin store.").color(ChatColor.RED).create());
+                } else {
+                    player.sendMessage(new ComponentBuilder("Upgraded " + upgraded + " servers to " + pluginName + " " + version.getVersion() + ".").color(ChatColor.GREEN).create());
+                }
+            });
+            return;
+        }
+        
+        player.sendMessage(new ComponentBuilder("--------- Plugin Store ---------").color(ChatColor.GOLD).create());
+        for (String pluginName : config.getStringList("server.allowed_plugins")) {
+            PluginStore.Version version = store.getCurrent(pluginName);
+            int installed = 0;
+            for (PlayerServer server : playerServers.values()) {
+                if (server.hasPlugin(pluginName)) {
+                    installed++;
+                }
+            }
+            player.sendMessage(new ComponentBuilder(pluginName).color(ChatColor.YELLOW)
+                    .append(" - " + (version == null ? "not stored" : version.getVersion()) + ", " + installed + " servers").color(ChatColor.WHITE).create());
+        }
     }
     
     private void updateLastActiveTime(PlayerServer server) {
+        server.setLastActive(System.currentTimeMillis());
         try (PreparedStatement stmt = dbConnection.prepareStatement("UPDATE servers SET last_active = CURRENT_TIMESTAMP WHERE id = ?")) {
             stmt.setInt(1, server.getId());
             stmt.executeUpdate();
@@ -510,7 +773,8 @@ public class PlayerServerManager extends Plugin {
                         player.sendMessage(new ComponentBuilder("You don't have permission to create a server!").color(ChatColor.RED).create());
                         return;
                     }
-                    plugin.createPlayerServer(player);
+                    player.sendMessage(new ComponentBuilder("Creating your server...").color(ChatColor.YELLOW).create());
+                    plugin.getProxy().getScheduler().runAsync(plugin, () -> plugin.createPlayerServer(player));
                     break;
                 case "delete":
                     if (!player.hasPermission("playerserver.delete")) {
@@ -540,6 +804,50 @@ public class PlayerServerManager extends Plugin {
                     }
                     plugin.openManageGui(player);
                     break;
+                case "console":
+                    if (!player.hasPermission("playerserver.console")) {
+                        player.sendMessage(new ComponentBuilder("You don't have permission to view server consoles!").color(ChatColor.RED).create());
+                        return;
+                    }
+                    plugin.showConsole(player, args);
+                    break;
+                case "pool":
+                    if (!player.hasPermission("playerserver.admin")) {
+                        player.sendMessage(new ComponentBuilder("You don't have permission to view the warm pool!").color(ChatColor.RED).create());
+                        return;
+                    }
+                    plugin.showWarmPoolStats(player);
+                    break;
+                case "nodes":
+                    if (!player.hasPermission("playerserver.admin")) {
+                        player.sendMessage(new ComponentBuilder("You don't have permission to view worker nodes!").color(ChatColor.RED).create());
+                        return;
+                    }
+                    plugin.showNodes(player);
+                    break;
+                case "benchmark":
+                    if (!player.hasPermission("playerserver.admin")) {
+                        player.sendMessage(new ComponentBuilder("You don't have permission to run JVM benchmarks!").color(ChatColor.RED).create());
+                        return;
+                    }
+                    if (!plugin.getJvmBenchmark().start(player)) {
+                        player.sendMessage(new ComponentBuilder("A JVM benchmark is already running.").color(ChatColor.YELLOW).create());
+                    }
+                    break;
+                case "backup":
+                    if (!player.hasPermission("playerserver.backup")) {
+                        player.sendMessage(new ComponentBuilder("You don't have permission to back up a server!").color(ChatColor.RED).create());
+                        return;
+                    }
+                    plugin.manageBackups(player, args);
+                    break;
+                case "plugins":
+                    if (!player.hasPermission("playerserver.admin")) {
+                        player.sendMessage(new ComponentBuilder("You don't have permission to manage the plugin store!").color(ChatColor.RED).create());
+                        return;
+                    }
+                    plugin.managePlugins(player, args);
+                    break;
                 default:
                     showHelp(player);
                     break;
@@ -553,6 +861,8 @@ public class PlayerServerManager extends Plugin {
             player.sendMessage(new ComponentBuilder("/server join").color(ChatColor.YELLOW).append(" - Join your server").color(ChatColor.WHITE).create());
             player.sendMessage(new ComponentBuilder("/server list").color(ChatColor.YELLOW).append(" - List all player servers").color(ChatColor.WHITE).create());
             player.sendMessage(new ComponentBuilder("/server manage").color(ChatColor.YELLOW).append(" - Manage your server settings").color(ChatColor.WHITE).create());
+            player.sendMessage(new ComponentBuilder("/server console [lines]").color(ChatColor.YELLOW).append(" - Show your server's recent console output").color(ChatColor.WHITE).create());
+            player.sendMessage(new ComponentBuilder("/server backup [list|restore <id> [file]]").color(ChatColor.YELLOW).append(" - Back up or restore your server").color(ChatColor.WHITE).create());
             player.sendMessage(new ComponentBuilder("----------------------------------------").color(ChatColor.GOLD).create());
         }
     }
@@ -561,6 +871,8 @@ public class PlayerServerManager extends Plugin {
         @Override
         public void run() {
             long inactivityThreshold = config.getLong("server.inactivity_minutes", 5);
+            boolean freezeEnabled = config.getBoolean("server.freeze.enabled", true);
+            long freezeThreshold = config.getLong("server.freeze.after_minutes", 2);
             
             for (PlayerServer server : playerServers.values()) {
                 if (!server.isRunning()) {
@@ -579,6 +891,9 @@ public class PlayerServerManager extends Plugin {
                                 if (minutesInactive >= inactivityThreshold) {
                                     getLogger().info("Stopping inactive server: " + server.getServerName() + " (" + minutesInactive + " minutes inactive)");
                                     serverManager.stopServer(server);
+                                } else if (freezeEnabled && minutesInactive >= freezeThreshold && !server.isFrozen()) {
+                                    // Suspend it until the full stop so the next visitor gets in instantly
+                                    serverManager.freezeServer(server);
                                 }
                             }
                         }
@@ -611,7 +926,22 @@ public class PlayerServerManager extends Plugin {
         return serverManager;
     }
     
+    public JvmBenchmark getJvmBenchmark() {
+        return jvmBenchmark;
+    }
+    
     public GuiManager getGuiManager() {
         return guiManager;
     }
+    
+    public PortAllocator getPortAllocator() {
+        return portAllocator;
+    }
+    
+    /**
+     * The listener holding players for servers that start on connect, or null if that is disabled.
+     */
+    public StartOnConnectListener getStartOnConnect() {
+        return startOnConnect;
+    }
 }
@@ -1,11 +1,13 @@
 package com.playerservers;
 
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
 import net.md_5.bungee.config.Configuration;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -13,37 +15,166 @@ import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 public class ServerManager {
+    private static final String READY_MARKER = "Done (";
+    
     private final PlayerServerManager plugin;
-    private final Map<Integer, Process> runningProcesses;
+    private final ProcessSupervisor supervisor;
+    private final Map<Integer, ConsoleBuffer> consoles;
+    private final Map<Integer, CompletableFuture<StartResult>> pendingStarts;
+    private final Map<Integer, CompletableFuture<StopResult>> pendingStops;
     private final String serverJar;
-    private final String serverHost;
     private final String templateDir;
     private final String serversDir;
     private final int memoryMB;
+    private final long startTimeoutSeconds;
+    private final long readyPingIntervalMillis;
+    private final boolean debugLogging;
+    private final long stopGraceSeconds;
+    private final long terminateGraceSeconds;
+    private final int consoleBufferBytes;
+    private final Map<Integer, Path> boundSlots;
+    private final Set<Integer> watchdogPatched;
+    private final CopyEngine copyEngine;
+    private final TemplateProvisioner provisioner;
+    private final AdmissionController admission;
+    private final NodeScheduler nodes;
+    private final CgroupManager cgroups;
+    private final ResourceSampler sampler;
+    private final CrashRecovery recovery;
+    private final List<JvmProfile> jvmProfiles;
+    private final int peakHeadroomPercent;
+    private final JvmProfile warmProfile;
+    private final CdsArchiveCache cdsArchives;
+    private final SharedJarCache sharedJars;
+    private final Path sourceJar;
+    private final PluginStore pluginStore;
+    private final DirectoryReaper reaper;
+    private final DiskUsageTracker diskUsage;
+    private final BackupEngine backups;
+    private volatile boolean stoppingAll;
+    private WarmPool warmPool;
     
     public ServerManager(PlayerServerManager plugin) {
         this.plugin = plugin;
-        this.runningProcesses = new HashMap<>();
+        this.pendingStarts = new ConcurrentHashMap<>();
+        this.pendingStops = new ConcurrentHashMap<>();
+        this.consoles = new ConcurrentHashMap<>();
+        this.boundSlots = new ConcurrentHashMap<>();
+        this.watchdogPatched = ConcurrentHashMap.newKeySet();
         
         Configuration config = plugin.getConfig();
+        this.supervisor = new ProcessSupervisor(
+                plugin,
+                config.getInt("server.output_pump_threads", 2),
+                config.getLong("server.output_poll_ms", 50)
+        );
         this.serverJar = config.getString("server.jar_file", "paper.jar");
-        this.serverHost = config.getString("server.host", "localhost");
         this.templateDir = config.getString("server.template_dir", plugin.getDataFolder() + File.separator + "template");
         this.serversDir = config.getString("server.servers_dir", plugin.getDataFolder() + File.separator + "servers");
-        this.memoryMB = config.getInt("server.memory_mb", 1024);
+        this.memoryMB = config.getInt("server.memory_mb", config.getInt("server_limits.ram_mb", 1024));
+        this.startTimeoutSeconds = config.getLong("server.start_timeout_seconds", 120);
+        this.readyPingIntervalMillis = config.getLong("server.ready_ping_interval_ms", 2000);
+        this.debugLogging = config.getBoolean("server.debug_logging", false);
+        this.stopGraceSeconds = config.getLong("server.stop_grace_seconds", 30);
+        this.terminateGraceSeconds = config.getLong("server.terminate_grace_seconds", 10);
+        this.consoleBufferBytes = config.getInt("server.console.buffer_kb", 64) * 1024;
+        this.copyEngine = CopyEngine.fromConfig(config);
+        this.provisioner = new TemplateProvisioner(
+                plugin.getLogger(),
+                copyEngine,
+                TemplateProvisioner.parseMode(config.getString("server.provisioning.mode", "auto")),
+                config.getStringList("server.provisioning.link_patterns")
+        );
         
         // Create directories if they don't exist
         new File(templateDir).mkdirs();
         new File(serversDir).mkdirs();
+        
+        // Deleted directories are renamed into the trash and removed in the background
+        this.reaper = new DirectoryReaper(plugin, config, Paths.get(serversDir, ".trash"));
+        reaper.recover();
+        this.diskUsage = new DiskUsageTracker(plugin, this, config);
+        this.backups = new BackupEngine(plugin, this, config);
+        
+        this.admission = new AdmissionController(plugin, config);
+        this.nodes = new NodeScheduler(plugin, config);
+        this.cgroups = new CgroupManager(plugin, config, Paths.get(serversDir));
+        this.sampler = new ResourceSampler(plugin, supervisor, cgroups);
+        this.recovery = new CrashRecovery(plugin, config);
+        this.jvmProfiles = JvmProfile.load(config, new File(templateDir).getName());
+        this.peakHeadroomPercent = config.getInt("server.jvm.peak_headroom_percent", 25);
+        this.warmProfile = JvmProfile.select(jvmProfiles, memoryMB, 0, peakHeadroomPercent);
+        
+        // Servers run the template's jar if it ships one, otherwise a link to the plugin's copy
+        Path templateJar = Paths.get(templateDir, serverJar);
+        this.sourceJar = Files.exists(templateJar) ? templateJar : plugin.getDataFolder().toPath().resolve(serverJar);
+        this.cdsArchives = new CdsArchiveCache(plugin, config, Paths.get(templateDir), sourceJar);
+        this.sharedJars = new SharedJarCache(plugin, config, Paths.get(serversDir, ".shared"));
+        plugin.getProxy().getScheduler().runAsync(plugin, () -> sharedJars.prime(sourceJar));
+        
+        // Plugin versions live next to the shared jar files so servers can hardlink them too
+        this.pluginStore = new PluginStore(plugin, Paths.get(serversDir, ".shared", "plugins"), plugin.getDataFolder().toPath().resolve("plugins"));
+        plugin.getProxy().getScheduler().runAsync(plugin, pluginStore::load);
+        if (config.getBoolean("server.warm_pool.enabled", false)) {
+            initWarmPool(config);
+        }
+    }
+    
+    private void initWarmPool(Configuration config) {
+        File launcherJar;
+        try {
+            launcherJar = new File(WarmLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Could not locate plugin jar, warm pool disabled", e);
+            return;
+        }
+        
+        List<String> command = new ArrayList<>(buildJvmArguments(warmProfile, memoryMB));
+        command.add("-cp");
+        command.add(launcherJar.getAbsolutePath());
+        command.add(WarmLauncher.class.getName());
+        // The same jar cold starts link, so a bound spare finds the shared patched files for it
+        command.add(sourceJar.toAbsolutePath().toString());
+        
+        warmPool = new WarmPool(
+                plugin,
+                new File(templateDir).getName(),
+                Paths.get(serversDir, ".warm"),
+                command,
+                config.getInt("server.warm_pool.min_size", 1),
+                config.getInt("server.warm_pool.max_size", 4)
+        );
+        warmPool.setCapacityCheck(admission::hasRoomForSpare);
+        admission.trackSpares(warmPool::getSpareCount, memoryMB);
+        warmPool.start(config.getLong("server.warm_pool.refill_interval_seconds", 30));
     }
     
     public boolean createServer(PlayerServer server) {
+        if (nodes.isRemote(server)) {
+            return createRemoteServer(server);
+        }
+        
         String serverDir = getServerDirectory(server);
         
         // Create server directory
@@ -56,15 +187,20 @@ public class ServerManager {
         try {
             File templateDirFile = new File(templateDir);
             if (templateDirFile.exists() && templateDirFile.isDirectory()) {
-                copyDirectory(Paths.get(templateDir), Paths.get(serverDir));
+                TemplateProvisioner.Result result = provisioner.provision(Paths.get(templateDir), Paths.get(serverDir));
+                plugin.getLogger().info("Provisioned " + server.getServerName() + " from template: " + result);
             }
             
-            // Copy server jar if it doesn't exist in template
+            // Link the jar and its already patched files from the shared cache; until the cache has
+            // been built for this jar, link the bare jar and let the server patch it itself
             File serverJarFile = new File(serverDir, serverJar);
+            if (!sharedJars.link(sourceJar, Paths.get(serverDir))) {
+                plugin.getProxy().getScheduler().runAsync(plugin, () -> sharedJars.prime(sourceJar));
+            }
             if (!serverJarFile.exists()) {
                 File sourceJarFile = new File(plugin.getDataFolder(), serverJar);
                 if (sourceJarFile.exists()) {
-                    Files.copy(sourceJarFile.toPath(), serverJarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    provisioner.linkOrCopy(sourceJarFile.toPath(), serverJarFile.toPath());
                 } else {
                     plugin.getLogger().warning("Server JAR file not found: " + sourceJarFile.getAbsolutePath());
                     return false;
@@ -87,10 +223,60 @@ public class ServerManager {
         }
     }
     
-    public boolean startServer(PlayerServer server) {
-        // Check if already running
-        if (server.isRunning() || runningProcesses.containsKey(server.getId())) {
+    private boolean createRemoteServer(PlayerServer server) {
+        try {
+            // The node copies its own template; the generated configs are sent from here
+            NodeClient node = nodes.getClient(server);
+            node.create(server.getServerName());
+            node.put(server.getServerName(), "server.properties", renderServerProperties(server).getBytes(), false);
+            node.put(server.getServerName(), "bukkit.yml", renderBukkitConfig().getBytes(), true);
+            node.put(server.getServerName(), "spigot.yml", renderSpigotConfig().getBytes(), true);
+            plugin.getLogger().info("Created server " + server.getServerName() + " on node " + server.getNode());
             return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to create server " + server.getServerName() + " on node " + server.getNode(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Starts the server process and returns a future that completes once the server is ready to
+     * accept players, either because it printed its "Done (" line or answered a status ping.
+     * Concurrent calls for the same server share one future.
+     */
+    public CompletableFuture<StartResult> startServer(PlayerServer server) {
+        CompletableFuture<StartResult> pending = pendingStarts.get(server.getId());
+        if (pending != null) {
+            return pending;
+        }
+        
+        // A server that is shutting down is started again once it has exited
+        CompletableFuture<StopResult> stopping = pendingStops.get(server.getId());
+        if (stopping != null) {
+            return stopping.thenCompose(stopped -> startServer(server));
+        }
+        
+        // Check if already running; a frozen server resumes in milliseconds instead of booting
+        if (server.isRunning() || supervisor.isSupervised(server.getId())) {
+            if (server.isFrozen()) {
+                return thawServer(server).thenApply(thawed -> thawed
+                        ? StartResult.alreadyRunning() : StartResult.failed(0, "Could not resume frozen server"));
+            }
+            return CompletableFuture.completedFuture(StartResult.alreadyRunning());
+        }
+        
+        final CompletableFuture<StartResult> future = new CompletableFuture<>();
+        final long requestedAt = System.currentTimeMillis();
+        pending = pendingStarts.putIfAbsent(server.getId(), future);
+        if (pending != null) {
+            return pending;
+        }
+        future.whenComplete((result, error) -> pendingStarts.remove(server.getId(), future));
+        
+        // Servers on worker nodes are launched by the node's agent, which enforces its own capacity
+        if (nodes.isRemote(server)) {
+            plugin.getProxy().getScheduler().runAsync(plugin, () -> launchRemote(server, future, requestedAt));
+            return future;
         }
         
         String serverDir = getServerDirectory(server);
@@ -98,111 +284,603 @@ public class ServerManager {
         
         if (!workingDir.exists() || !workingDir.isDirectory()) {
             plugin.getLogger().warning("Server directory not found: " + serverDir);
-            return false;
+            future.complete(StartResult.failed(0, "Server directory not found"));
+            return future;
         }
         
-        // Build process command
-        ProcessBuilder pb = new ProcessBuilder(
-                "java",
-                "-Xmx" + memoryMB + "M",
-                "-Xms" + (memoryMB / 2) + "M",
-                "-jar",
-                serverJar,
-                "--nogui",
-                "--port", String.valueOf(server.getPort())
-        );
+        // Servers created before freezing was enabled still have the 60 second watchdog
+        if (plugin.getConfig().getBoolean("server.freeze.enabled", true) && patchWatchdogTimeout(server, workingDir)) {
+            watchdogPatched.add(server.getId());
+        } else {
+            watchdogPatched.remove(server.getId());
+        }
         
-        pb.directory(workingDir);
-        pb.redirectErrorStream(true);
+        // Servers over their storage quota stay stopped until the owner frees space
+        final ResourceLimits limits = ResourceLimits.forServer(plugin.getConfig(), server);
+        if (diskUsage.isOverQuota(server, limits.getStorageMB())) {
+            future.complete(StartResult.failed(0, "Server uses more than its " + limits.getStorageMB() + " MB storage quota"));
+            return future;
+        }
+        
+        // Spares run the default heap and profile, so servers needing anything else always boot cold
+        final JvmProfile profile = selectProfile(server, limits);
+        final boolean warm = warmPool != null && limits.getRamMB() == memoryMB && profile == warmProfile;
         
+        // Only launch once the host has capacity; queued starts launch off the releasing thread
+        CompletableFuture<Void> admitted = admission.admit(server, limits.getRamMB(), warm);
+        final boolean queued = !admitted.isDone();
+        admitted.whenComplete((ignored, error) -> {
+            if (error != null) {
+                future.complete(StartResult.failed(System.currentTimeMillis() - requestedAt, "Start request was cancelled"));
+            } else if (queued) {
+                plugin.getProxy().getScheduler().runAsync(plugin, () -> launch(server, limits, profile, warm, workingDir, future, requestedAt));
+            } else {
+                launch(server, limits, profile, warm, workingDir, future, requestedAt);
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * Whether a start is in progress, including a start still waiting in the admission queue.
+     */
+    public boolean isStarting(PlayerServer server) {
+        CompletableFuture<StartResult> pending = pendingStarts.get(server.getId());
+        return pending != null && !pending.isDone();
+    }
+    
+    private void launch(PlayerServer server, ResourceLimits limits, JvmProfile profile, boolean warm, File workingDir,
+                        CompletableFuture<StartResult> future, long startedAt) {
         try {
-            // Start the process
-            Process process = pb.start();
-            runningProcesses.put(server.getId(), process);
+            // Start the process, preferring a warm spare from the pool
+            Process process = warm ? launchWarm(server) : null;
+            if (process != null) {
+                cgroups.attach(server, limits, process.pid());
+            } else {
+                process = launchCold(server, limits, profile, workingDir);
+            }
             server.setRunning(true);
             
-            // Log output for debugging
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-                try {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        if (plugin.getConfig().getBoolean("server.debug_logging", false)) {
-                            plugin.getLogger().info("[" + server.getServerName() + "] " + line);
-                        }
-                    }
-                } catch (IOException e) {
-                    if (server.isRunning()) {
-                        plugin.getLogger().log(Level.SEVERE, "Error reading server process output for " + server.getServerName(), e);
-                    }
+            // Log output for debugging and watch for the ready line, then clean up on exit
+            supervisor.supervise(server, process, getConsole(server), line -> {
+                if (!future.isDone() && line.contains(READY_MARKER)) {
+                    future.complete(StartResult.ready(System.currentTimeMillis() - startedAt));
+                }
+                if (debugLogging) {
+                    plugin.getLogger().info("[" + server.getServerName() + "] " + line);
                 }
+            }, exitCode -> {
+                plugin.getLogger().info("Server " + server.getServerName() + " terminated with exit code " + exitCode);
+                
+                // Read the OOM counter before the group goes away; it is fresh for every launch
+                CgroupManager.Usage usage = cgroups.readUsage(server);
+                boolean stopRequested = stoppingAll || pendingStops.containsKey(server.getId());
+                CrashRecovery.ExitReason reason = CrashRecovery.classify(exitCode, stopRequested, usage == null ? 0 : usage.getOomKills());
+                
+                // Clean up
+                Path slotDir = boundSlots.remove(server.getId());
+                if (slotDir != null) {
+                    warmPool.release(slotDir, Paths.get(serversDir, server.getServerName()));
+                }
+                server.setRunning(false);
+                admission.release(server);
+                cgroups.remove(server);
+                cdsArchives.onExit(server);
+                // Schedule any restart first, so players waiting on this start can wait for that one
+                recovery.onExit(server, reason, exitCode, System.currentTimeMillis() - startedAt);
+                future.complete(StartResult.failed(System.currentTimeMillis() - startedAt,
+                        "Server exited with code " + exitCode + " before it was ready"));
             });
             
-            // Handle process termination
-            plugin.getProxy().getScheduler().runAsync(plugin, () -> {
+            plugin.getLogger().info("Starting server " + server.getServerName() + " on port " + server.getPort());
+            watchReadiness(server, future, startedAt);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to start server process for " + server.getServerName(), e);
+            server.setRunning(false);
+            admission.release(server);
+            cgroups.remove(server);
+            cdsArchives.onExit(server);
+            future.complete(StartResult.failed(System.currentTimeMillis() - startedAt, e.getMessage()));
+        }
+    }
+    
+    private void launchRemote(PlayerServer server, CompletableFuture<StartResult> future, long startedAt) {
+        try {
+            ResourceLimits limits = ResourceLimits.forServer(plugin.getConfig(), server);
+            nodes.getClient(server).start(server.getServerName(), admission.committedMemory(limits.getRamMB()),
+                    limits.getRamMB(), server.getPort(), selectProfile(server, limits));
+            server.setRunning(true);
+            plugin.getLogger().info("Starting server " + server.getServerName() + " on node " + server.getNode() + " port " + server.getPort());
+            watchReadiness(server, future, startedAt);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to start server " + server.getServerName() + " on node " + server.getNode(), e);
+            future.complete(StartResult.failed(System.currentTimeMillis() - startedAt, e.getMessage()));
+        }
+    }
+    
+    private void watchReadiness(PlayerServer server, CompletableFuture<StartResult> future, long startedAt) {
+        // Fall back to status pings in case the console line is missed or customised
+        final ScheduledTask pingTask = plugin.getProxy().getScheduler().schedule(plugin, () -> {
+            ServerInfo serverInfo = plugin.getProxy().getServerInfo(server.getServerName());
+            if (serverInfo == null || future.isDone()) {
+                return;
+            }
+            serverInfo.ping((ping, error) -> {
+                if (error == null && ping != null) {
+                    future.complete(StartResult.ready(System.currentTimeMillis() - startedAt));
+                }
+            });
+        }, readyPingIntervalMillis, readyPingIntervalMillis, TimeUnit.MILLISECONDS);
+        
+        final ScheduledTask timeoutTask = plugin.getProxy().getScheduler().schedule(plugin, () -> {
+            if (future.complete(StartResult.timedOut(System.currentTimeMillis() - startedAt))) {
+                // A server reported as failed must not keep running and holding its reservation
+                plugin.getLogger().warning("Server " + server.getServerName() + " did not become ready within " + startTimeoutSeconds + " seconds, stopping it");
+                stopServer(server);
+            }
+        }, startTimeoutSeconds, TimeUnit.SECONDS);
+        
+        future.whenComplete((result, error) -> {
+            pingTask.cancel();
+            timeoutTask.cancel();
+            if (result != null && result.getStatus() == StartResult.Status.READY) {
+                plugin.getLogger().info("Server " + server.getServerName() + " is ready after " + result.getElapsedMillis() + "ms");
+            }
+        });
+    }
+    
+    private Process launchWarm(PlayerServer server) {
+        if (warmPool == null) {
+            return null;
+        }
+        
+        WarmPool.Spare spare = warmPool.claim();
+        if (spare == null) {
+            return null;
+        }
+        
+        Path serverDir = Paths.get(getServerDirectory(server));
+        if (!warmPool.bind(spare, serverDir, server.getServerName(), server.getPort())) {
+            return null;
+        }
+        
+        boundSlots.put(server.getId(), spare.getSlotDir());
+        plugin.getLogger().info("Claimed warm spare " + spare.getSlotDir().getFileName() + " for server " + server.getServerName());
+        return spare.getProcess();
+    }
+    
+    private Process launchCold(PlayerServer server, ResourceLimits limits, JvmProfile profile, File workingDir) throws IOException {
+        List<String> command = buildCommand(profile, limits.getRamMB(), server.getPort());
+        if (profile.getCdsArchive().isEmpty()) {
+            // JVM options go right after the java executable
+            command.addAll(1, cdsArchives.argumentsFor(server));
+        }
+        plugin.getLogger().info("Launching " + server.getServerName() + " with JVM profile " + profile);
+        ProcessBuilder pb = new ProcessBuilder(cgroups.wrapCommand(server, limits, command));
+        pb.directory(workingDir);
+        pb.redirectErrorStream(true);
+        return pb.start();
+    }
+    
+    /**
+     * Builds the command line that runs the server jar with the given JVM profile and heap.
+     */
+    public List<String> buildCommand(JvmProfile profile, int heapMB, int port) {
+        List<String> command = new ArrayList<>(buildJvmArguments(profile, heapMB));
+        command.add("-jar");
+        command.add(serverJar);
+        command.add("--nogui");
+        command.add("--port");
+        command.add(String.valueOf(port));
+        return command;
+    }
+    
+    private List<String> buildJvmArguments(JvmProfile profile, int heapMB) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("java");
+        profile.appendArguments(arguments, heapMB);
+        return arguments;
+    }
+    
+    /**
+     * Chooses the JVM profile from the server's heap and the peak memory recorded for it in
+     * player_statistics. Without any history the configured heap alone decides.
+     */
+    private JvmProfile selectProfile(PlayerServer server, ResourceLimits limits) {
+        long peakMB = 0;
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement(
+                "SELECT peak_memory_usage FROM player_statistics WHERE uuid = ?")) {
+            stmt.setString(1, server.getPlayerUuid().toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    peakMB = rs.getLong("peak_memory_usage") / (1024 * 1024);
+                }
+            }
+        } catch (SQLException e) {
+            // Statistics are optional; the table does not exist until that module has run
+        }
+        return JvmProfile.select(jvmProfiles, limits.getRamMB(), peakMB, peakHeadroomPercent);
+    }
+    
+    /**
+     * Creates a throwaway server directory from the template, for benchmarks. Any previous
+     * directory of the same name is replaced.
+     */
+    public File prepareScratchDirectory(String name) throws IOException {
+        File dir = new File(serversDir, ".scratch" + File.separator + name);
+        reaper.trash(dir.toPath());
+        dir.mkdirs();
+        
+        provisioner.provision(Paths.get(templateDir), dir.toPath());
+        File jar = new File(dir, serverJar);
+        if (!jar.exists()) {
+            provisioner.linkOrCopy(new File(plugin.getDataFolder(), serverJar).toPath(), jar.toPath());
+        }
+        return dir;
+    }
+    
+    public void removeScratchDirectory(File dir) throws IOException {
+        reaper.trash(dir.toPath());
+    }
+    
+    /**
+     * Stops the server without blocking the caller. The child first gets a "stop" console command so
+     * worlds are saved, then SIGTERM after server.stop_grace_seconds and SIGKILL after another
+     * server.terminate_grace_seconds. Concurrent calls share one future.
+     */
+    public CompletableFuture<StopResult> stopServer(PlayerServer server) {
+        CompletableFuture<StopResult> pending = pendingStops.get(server.getId());
+        if (pending != null) {
+            return pending;
+        }
+        
+        // A start still waiting for capacity is simply dropped from the queue
+        admission.cancel(server);
+        
+        if (nodes.isRemote(server)) {
+            return stopRemoteServer(server);
+        }
+        
+        ProcessSupervisor.Handle handle = supervisor.get(server.getId());
+        if (!server.isRunning() || handle == null) {
+            server.setRunning(false);
+            return CompletableFuture.completedFuture(StopResult.alreadyStopped());
+        }
+        
+        // Only one caller sends the stop and schedules the escalation; the others share its future
+        final CompletableFuture<StopResult> future = new CompletableFuture<>();
+        CompletableFuture<StopResult> concurrent = pendingStops.putIfAbsent(server.getId(), future);
+        if (concurrent != null) {
+            return concurrent;
+        }
+        final long stopRequestedAt = System.currentTimeMillis();
+        final AtomicReference<StopResult.Status> escalation = new AtomicReference<>(StopResult.Status.STOPPED);
+        final Process process = handle.getProcess();
+        
+        // A suspended JVM can't act on the stop command; it reads it from stdin once resumed
+        thawServer(server);
+        
+        // Ask the server to shut down by itself so worlds are saved
+        long stopGrace = sendStopCommand(server, process) ? stopGraceSeconds : 0;
+        
+        final ScheduledTask terminateTask = plugin.getProxy().getScheduler().schedule(plugin, () -> {
+            if (process.isAlive() && !future.isDone()) {
+                plugin.getLogger().warning("Server " + server.getServerName() + " ignored the stop command, sending SIGTERM");
+                escalation.set(StopResult.Status.TERMINATED);
+                process.destroy();
+            }
+        }, stopGrace, TimeUnit.SECONDS);
+        
+        final ScheduledTask killTask = plugin.getProxy().getScheduler().schedule(plugin, () -> {
+            if (process.isAlive() && !future.isDone()) {
+                plugin.getLogger().warning("Server " + server.getServerName() + " did not exit after SIGTERM, killing it");
+                escalation.set(StopResult.Status.KILLED);
+                process.destroyForcibly();
+            }
+        }, stopGrace + terminateGraceSeconds, TimeUnit.SECONDS);
+        
+        // Completes after the supervisor has delivered the last output and run the exit cleanup
+        handle.getTermination().whenComplete((exitCode, error) -> {
+            terminateTask.cancel();
+            killTask.cancel();
+            server.setRunning(false);
+            pendingStops.remove(server.getId(), future);
+            StopResult result = StopResult.of(escalation.get(), System.currentTimeMillis() - stopRequestedAt, exitCode == null ? -1 : exitCode);
+            plugin.getLogger().info("Server " + server.getServerName() + " stopped: " + result);
+            future.complete(result);
+        });
+        
+        return future;
+    }
+    
+    private CompletableFuture<StopResult> stopRemoteServer(PlayerServer server) {
+        if (!server.isRunning()) {
+            return CompletableFuture.completedFuture(StopResult.alreadyStopped());
+        }
+        
+        final CompletableFuture<StopResult> future = new CompletableFuture<>();
+        CompletableFuture<StopResult> concurrent = pendingStops.putIfAbsent(server.getId(), future);
+        if (concurrent != null) {
+            return concurrent;
+        }
+        final long stopRequestedAt = System.currentTimeMillis();
+        future.whenComplete((result, error) -> pendingStops.remove(server.getId(), future));
+        
+        // The agent runs the same stop, terminate, kill escalation and answers once the child exited
+        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
+            try {
+                StopResult result = stopOnNode(server, stopGraceSeconds, stopRequestedAt);
+                server.setRunning(false);
+                future.complete(result);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to stop server " + server.getServerName() + " on node " + server.getNode(), e);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+    
+    private StopResult stopOnNode(PlayerServer server, long graceSeconds, long stopRequestedAt) throws IOException {
+        resume(server);
+        String[] reply = nodes.getClient(server).stop(server.getServerName(), graceSeconds);
+        return StopResult.of(StopResult.Status.valueOf(reply[0]), System.currentTimeMillis() - stopRequestedAt, Integer.parseInt(reply[1]));
+    }
+    
+    /**
+     * Stops every running server within an overall time budget, for proxy shutdown. At most
+     * parallelism servers are saving at once, but every server receives its stop command before any
+     * server is terminated or killed. Returns the outcome per server name.
+     */
+    public Map<String, StopResult> stopAll(int parallelism, long budgetSeconds) {
+        stoppingAll = true;
+        final long startedAt = System.currentTimeMillis();
+        final long deadline = startedAt + TimeUnit.SECONDS.toMillis(budgetSeconds);
+        final long escalateAt = Math.max(startedAt, deadline - TimeUnit.SECONDS.toMillis(terminateGraceSeconds));
+        final Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        final Map<String, StopResult> results = new ConcurrentHashMap<>();
+        final Map<ProcessSupervisor.Handle, StopResult.Status> stopping = new LinkedHashMap<>();
+        
+        // Servers on worker nodes are stopped by their agents alongside the local ones
+        final long remoteGrace = Math.max(0, budgetSeconds - terminateGraceSeconds - 10);
+        ExecutorService remoteStops = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        List<Future<?>> remoteFutures = new ArrayList<>();
+        for (PlayerServer server : plugin.getPlayerServers().values()) {
+            if (!nodes.isRemote(server) || !server.isRunning()) {
+                continue;
+            }
+            remoteFutures.add(remoteStops.submit(() -> {
                 try {
-                    int exitCode = process.waitFor();
-                    plugin.getLogger().info("Server " + server.getServerName() + " terminated with exit code " + exitCode);
-                    
-                    // Clean up
-                    runningProcesses.remove(server.getId());
+                    results.put(server.getServerName(), stopOnNode(server, remoteGrace, startedAt));
                     server.setRunning(false);
-                } catch (InterruptedException e) {
-                    plugin.getLogger().log(Level.SEVERE, "Error monitoring server process for " + server.getServerName(), e);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to stop server " + server.getServerName() + " on node " + server.getNode(), e);
                 }
-            });
-            
-            // Wait for server to start up
-            plugin.getLogger().info("Starting server " + server.getServerName() + " on port " + server.getPort());
-            
-            // Wait for server to be ready (in a real implementation, we would check if the server is ready to accept connections)
+            }));
+        }
+        remoteStops.shutdown();
+        
+        List<ProcessSupervisor.Handle> handles = new ArrayList<>(supervisor.getHandles());
+        for (ProcessSupervisor.Handle handle : handles) {
+            // Wait for a free slot, but never past the point where escalation must begin
+            boolean acquired = false;
             try {
-                TimeUnit.SECONDS.sleep(10);
+                acquired = permits.tryAcquire(Math.max(0, escalateAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
-                plugin.getLogger().log(Level.WARNING, "Interrupted while waiting for server to start", e);
+                Thread.currentThread().interrupt();
             }
             
+            PlayerServer server = handle.getServer();
+            final boolean release = acquired;
+            resume(server);
+            stopping.put(handle, sendStopCommand(server, handle.getProcess()) ? StopResult.Status.STOPPED : StopResult.Status.TERMINATED);
+            handle.getTermination().whenComplete((exitCode, error) -> {
+                if (release) {
+                    permits.release();
+                }
+            });
+        }
+        
+        // Everyone has been asked to stop; give stragglers SIGTERM and then SIGKILL
+        awaitAll(stopping.keySet(), escalateAt);
+        for (Map.Entry<ProcessSupervisor.Handle, StopResult.Status> entry : stopping.entrySet()) {
+            if (entry.getKey().getProcess().isAlive()) {
+                entry.setValue(StopResult.Status.TERMINATED);
+                entry.getKey().getProcess().destroy();
+            }
+        }
+        awaitAll(stopping.keySet(), deadline);
+        for (Map.Entry<ProcessSupervisor.Handle, StopResult.Status> entry : stopping.entrySet()) {
+            if (entry.getKey().getProcess().isAlive()) {
+                entry.setValue(StopResult.Status.KILLED);
+                entry.getKey().getProcess().destroyForcibly();
+            }
+        }
+        awaitAll(stopping.keySet(), System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5));
+        
+        for (Map.Entry<ProcessSupervisor.Handle, StopResult.Status> entry : stopping.entrySet()) {
+            PlayerServer server = entry.getKey().getServer();
+            Integer exitCode = entry.getKey().getTermination().getNow(-1);
+            results.put(server.getServerName(), StopResult.of(entry.getValue(), System.currentTimeMillis() - startedAt, exitCode));
+            server.setRunning(false);
+        }
+        
+        try {
+            if (!remoteStops.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()) + 15_000, TimeUnit.MILLISECONDS)) {
+                plugin.getLogger().warning((remoteFutures.size() - results.size()) + " servers on worker nodes did not confirm their stop");
+                remoteStops.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+    
+    private void awaitAll(Collection<ProcessSupervisor.Handle> handles, long until) {
+        for (ProcessSupervisor.Handle handle : handles) {
+            long remaining = until - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                handle.getTermination().get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Exit cleanup failed; the process itself is gone, keep waiting for the others
+            }
+        }
+    }
+    
+    /**
+     * Suspends an idle server with SIGSTOP. It keeps its heap resident but uses no CPU until it is
+     * thawed again, which takes milliseconds instead of a full boot.
+     */
+    public boolean freezeServer(PlayerServer server) {
+        if (!server.isRunning() || server.isFrozen() || isStarting(server) || pendingStops.containsKey(server.getId())) {
+            return false;
+        }
+        // After a thaw the watchdog would see one endless tick and kill a server it still guards
+        if (!watchdogPatched.contains(server.getId())) {
+            return false;
+        }
+        if (!signal(server, "STOP")) {
+            return false;
+        }
+        server.setFrozen(true);
+        plugin.getLogger().info("Froze idle server " + server.getServerName());
+        return true;
+    }
+    
+    /**
+     * Resumes a frozen server with SIGCONT off the calling thread, so connect events and commands
+     * don't wait for the signal. Completes with true once the server is no longer frozen.
+     */
+    public CompletableFuture<Boolean> thawServer(PlayerServer server) {
+        if (!server.isFrozen()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        CompletableFuture<Boolean> thawed = new CompletableFuture<>();
+        plugin.getProxy().getScheduler().runAsync(plugin, () -> thawed.complete(resume(server)));
+        return thawed;
+    }
+    
+    private boolean resume(PlayerServer server) {
+        if (!server.isFrozen()) {
             return true;
+        }
+        if (!signal(server, "CONT")) {
+            return false;
+        }
+        server.setFrozen(false);
+        plugin.getLogger().info("Thawed server " + server.getServerName());
+        return true;
+    }
+    
+    private boolean signal(PlayerServer server, String signal) {
+        if (nodes.isRemote(server)) {
+            try {
+                nodes.getClient(server).signal(server.getServerName(), signal);
+                return true;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to send SIG" + signal + " to " + server.getServerName() + " on node " + server.getNode(), e);
+                return false;
+            }
+        }
+        
+        ProcessSupervisor.Handle handle = supervisor.get(server.getId());
+        if (handle == null) {
+            return false;
+        }
+        try {
+            // The JDK has no API for job control signals; kill itself returns within milliseconds
+            Process kill = new ProcessBuilder("kill", "-" + signal, String.valueOf(handle.getProcess().pid())).start();
+            if (!kill.waitFor(1, TimeUnit.SECONDS)) {
+                kill.destroyForcibly();
+                return false;
+            }
+            return kill.exitValue() == 0;
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to start server process for " + server.getServerName(), e);
+            plugin.getLogger().log(Level.WARNING, "Failed to send SIG" + signal + " to " + server.getServerName(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
     }
     
-    public boolean stopServer(PlayerServer server) {
-        if (!server.isRunning() || !runningProcesses.containsKey(server.getId())) {
-            server.setRunning(false);
+    private boolean sendStopCommand(PlayerServer server, Process process) {
+        try {
+            OutputStream stdin = process.getOutputStream();
+            stdin.write("stop\n".getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not send stop command to " + server.getServerName() + ", terminating it", e);
+            process.destroy();
+            return false;
+        }
+    }
+    
+    /**
+     * Writes a console command to a server running on this host. Returns false if it isn't running
+     * here or the command could not be written.
+     */
+    public boolean sendCommand(PlayerServer server, String command) {
+        ProcessSupervisor.Handle handle = supervisor.get(server.getId());
+        if (handle == null || nodes.isRemote(server)) {
+            return false;
+        }
+        try {
+            OutputStream stdin = handle.getProcess().getOutputStream();
+            stdin.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
             return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not send command to " + server.getServerName(), e);
+            return false;
         }
+    }
+    
+    /**
+     * Deletes a server's files. A running server is stopped first and its files are trashed once the
+     * process has exited; the returned future completes then, so callers never wait for the stop.
+     */
+    public CompletableFuture<Boolean> deleteServer(PlayerServer server) {
+        admission.cancel(server);
         
-        Process process = runningProcesses.get(server.getId());
-        if (process != null) {
-            // Try to stop gracefully first
-            process.destroy();
-            
-            // Wait for the process to terminate
-            try {
-                if (!process.waitFor(30, TimeUnit.SECONDS)) {
-                    // Force kill if it doesn't terminate
-                    process.destroyForcibly();
+        if (nodes.isRemote(server)) {
+            // The agent kills the process and deletes the files before it answers
+            CompletableFuture<Boolean> deleted = new CompletableFuture<>();
+            plugin.getProxy().getScheduler().runAsync(plugin, () -> {
+                try {
+                    nodes.getClient(server).delete(server.getServerName());
+                    server.setRunning(false);
+                    deleted.complete(true);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to delete server " + server.getServerName() + " on node " + server.getNode(), e);
+                    deleted.complete(false);
                 }
-            } catch (InterruptedException e) {
-                plugin.getLogger().log(Level.WARNING, "Interrupted while waiting for server to stop", e);
-                // Force kill
-                process.destroyForcibly();
-            }
-            
-            runningProcesses.remove(server.getId());
+            });
+            return deleted;
         }
         
-        server.setRunning(false);
-        return true;
+        // No process may still write to the files when they are trashed
+        return stopServer(server).handle((stopped, error) -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to stop " + server.getServerName() + ", keeping its files", error);
+                return false;
+            }
+            return trashServerFiles(server);
+        });
     }
     
-    public boolean deleteServer(PlayerServer server) {
-        // Stop the server if it's running
-        if (server.isRunning()) {
-            stopServer(server);
+    private boolean trashServerFiles(PlayerServer server) {
+        ConsoleBuffer console = consoles.remove(server.getId());
+        if (console != null) {
+            console.close();
         }
         
         // Delete server files
@@ -211,7 +889,7 @@ public class ServerManager {
         
         if (serverDirFile.exists() && serverDirFile.isDirectory()) {
             try {
-                deleteDirectory(serverDirFile);
+                reaper.trash(serverDirFile.toPath());
                 return true;
             } catch (IOException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to delete server directory for " + server.getServerName(), e);
@@ -223,32 +901,32 @@ public class ServerManager {
     }
     
     public boolean installPlugin(PlayerServer server, String pluginName) {
-        if (!server.isRunning()) {
-            return false;
-        }
-        
         // Check if plugin is in the allowed list
         Configuration config = plugin.getConfig();
         if (!config.getStringList("server.allowed_plugins").contains(pluginName)) {
             return false;
         }
         
-        // Copy plugin jar from plugins directory to server's plugins directory
-        String serverDir = getServerDirectory(server);
-        File pluginsDir = new File(serverDir, "plugins");
-        if (!pluginsDir.exists()) {
-            pluginsDir.mkdirs();
+        if (pluginStore.getCurrent(pluginName) == null) {
+            pluginStore.importAll();
+        }
+        PluginStore.Version version = pluginStore.getCurrent(pluginName);
+        if (version == null) {
+            plugin.getLogger().warning("Plugin " + pluginName + " is allowed but not in the plugin store");
+            return false;
         }
-        
-        File sourcePluginFile = new File(plugin.getDataFolder(), "plugins" + File.separator + pluginName + ".jar");
-        File targetPluginFile = new File(pluginsDir, pluginName + ".jar");
         
         try {
-            Files.copy(sourcePluginFile.toPath(), targetPluginFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            
+            // A stopped server loads the plugin on its next start, a running one on restart
+            deployPlugin(server, version);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to install plugin " + pluginName + " for server " + server.getServerName(), e);
+            return false;
+        }
+        
+        if (!server.hasPlugin(pluginName)) {
             // Add to database
-            try (Connection conn = plugin.getDbConnection();
-                 PreparedStatement stmt = conn.prepareStatement("INSERT INTO server_plugins (server_id, plugin_name) VALUES (?, ?)")) {
+            try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement("INSERT INTO server_plugins (server_id, plugin_name) VALUES (?, ?)")) {
                 stmt.setInt(1, server.getId());
                 stmt.setString(2, pluginName);
                 stmt.executeUpdate();
@@ -258,12 +936,49 @@ public class ServerManager {
             
             // Add to server object
             server.addPlugin(pluginName);
-            
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Moves every server that has the plugin to its current version in the store, importing new
+     * jars first. Local servers only get their link replaced; running servers keep the version they
+     * loaded until they restart. Returns the number of servers that changed version.
+     */
+    public int upgradePlugin(String pluginName) {
+        pluginStore.importAll();
+        PluginStore.Version version = pluginStore.getCurrent(pluginName);
+        if (version == null) {
+            return 0;
+        }
+        
+        int upgraded = 0;
+        for (PlayerServer server : plugin.getPlayerServers().values()) {
+            if (!server.hasPlugin(pluginName)) {
+                continue;
+            }
+            try {
+                if (deployPlugin(server, version)) {
+                    upgraded++;
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to upgrade plugin " + pluginName + " on server " + server.getServerName(), e);
+            }
+        }
+        plugin.getLogger().info("Upgraded " + pluginName + " to " + version.getVersion() + " on " + upgraded + " servers");
+        return upgraded;
+    }
+    
+    private boolean deployPlugin(PlayerServer server, PluginStore.Version version) throws IOException {
+        String fileName = version.getPluginName() + ".jar";
+        if (nodes.isRemote(server)) {
+            // Worker nodes have their own disks, so they still receive the jar itself
+            nodes.getClient(server).put(server.getServerName(), "plugins/" + fileName,
+                    Files.readAllBytes(pluginStore.getObject(version)), false);
             return true;
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to install plugin " + pluginName + " for server " + server.getServerName(), e);
-            return false;
         }
+        return pluginStore.link(version, Paths.get(getServerDirectory(server), "plugins", fileName));
     }
     
     public boolean uninstallPlugin(PlayerServer server, String pluginName) {
@@ -272,16 +987,22 @@ public class ServerManager {
         }
         
         // Delete plugin jar
-        String serverDir = getServerDirectory(server);
-        File pluginFile = new File(serverDir, "plugins" + File.separator + pluginName + ".jar");
-        
-        if (pluginFile.exists()) {
-            pluginFile.delete();
+        if (nodes.isRemote(server)) {
+            try {
+                nodes.getClient(server).remove(server.getServerName(), "plugins/" + pluginName + ".jar");
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to remove plugin " + pluginName + " from server " + server.getServerName(), e);
+                return false;
+            }
+        } else {
+            File pluginFile = new File(getServerDirectory(server), "plugins" + File.separator + pluginName + ".jar");
+            if (pluginFile.exists()) {
+                pluginFile.delete();
+            }
         }
         
         // Remove from database
-        try (Connection conn = plugin.getDbConnection();
-             PreparedStatement stmt = conn.prepareStatement("DELETE FROM server_plugins WHERE server_id = ? AND plugin_name = ?")) {
+        try (PreparedStatement stmt = plugin.getDbConnection().prepareStatement("DELETE FROM server_plugins WHERE server_id = ? AND plugin_name = ?")) {
             stmt.setInt(1, server.getId());
             stmt.setString(2, pluginName);
             stmt.executeUpdate();
@@ -327,17 +1048,149 @@ public class ServerManager {
         return true;
     }
     
-    private String getServerDirectory(PlayerServer server) {
+    public String getServerDirectory(PlayerServer server) {
+        // While a warm spare runs the server, its files live in the spare's slot
+        Path slotDir = boundSlots.get(server.getId());
+        if (slotDir != null) {
+            return slotDir.toString();
+        }
         return serversDir + File.separator + server.getServerName();
     }
     
+    /**
+     * Returns the console ring buffer of a server, creating it on first use. The buffer outlives the
+     * process so the output of a stopped or crashed server can still be tailed.
+     */
+    public ConsoleBuffer getConsole(PlayerServer server) {
+        return consoles.computeIfAbsent(server.getId(), id -> {
+            Configuration config = plugin.getConfig();
+            RotatingLog spill = null;
+            if (config.getBoolean("server.console.spill.enabled", false)) {
+                String logsDir = config.getString("server.console.spill.directory", plugin.getDataFolder() + File.separator + "console-logs");
+                spill = new RotatingLog(
+                        Paths.get(logsDir, server.getServerName()),
+                        config.getLong("server.console.spill.max_file_kb", 10240) * 1024,
+                        config.getInt("server.console.spill.max_files", 5),
+                        task -> plugin.getProxy().getScheduler().runAsync(plugin, task),
+                        plugin.getLogger()
+                );
+            }
+            return new ConsoleBuffer(consoleBufferBytes, spill);
+        });
+    }
+    
+    public List<String> tailConsole(PlayerServer server, int lines) {
+        if (nodes.isRemote(server)) {
+            try {
+                return nodes.getClient(server).tail(server.getServerName(), lines);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not fetch console of " + server.getServerName() + ": " + e.getMessage());
+                return new ArrayList<>();
+            }
+        }
+        ConsoleBuffer console = consoles.get(server.getId());
+        return console == null ? new ArrayList<>() : console.tail(lines);
+    }
+    
+    public ProcessSupervisor getSupervisor() {
+        return supervisor;
+    }
+    
+    public WarmPool getWarmPool() {
+        return warmPool;
+    }
+    
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+    
+    public NodeScheduler getNodes() {
+        return nodes;
+    }
+    
+    public CgroupManager getCgroups() {
+        return cgroups;
+    }
+    
+    public ResourceSampler getSampler() {
+        return sampler;
+    }
+    
+    public CrashRecovery getRecovery() {
+        return recovery;
+    }
+    
+    public List<JvmProfile> getJvmProfiles() {
+        return jvmProfiles;
+    }
+    
+    public CdsArchiveCache getCdsArchives() {
+        return cdsArchives;
+    }
+    
+    public CopyEngine getCopyEngine() {
+        return copyEngine;
+    }
+    
+    public TemplateProvisioner getProvisioner() {
+        return provisioner;
+    }
+    
+    public PluginStore getPluginStore() {
+        return pluginStore;
+    }
+    
+    public DirectoryReaper getReaper() {
+        return reaper;
+    }
+    
+    public DiskUsageTracker getDiskUsage() {
+        return diskUsage;
+    }
+    
+    public BackupEngine getBackups() {
+        return backups;
+    }
+    
+    public void shutdown() {
+        sampler.shutdown();
+        diskUsage.shutdown();
+        backups.shutdown();
+        if (warmPool != null) {
+            warmPool.shutdown();
+        }
+        copyEngine.shutdown();
+        reaper.shutdown();
+        supervisor.shutdown();
+        for (ConsoleBuffer console : consoles.values()) {
+            console.close();
+        }
+    }
+    
     private void generateServerProperties(PlayerServer server) {
+        if (nodes.isRemote(server)) {
+            try {
+                nodes.getClient(server).put(server.getServerName(), "server.properties", renderServerProperties(server).getBytes(), false);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to write server.properties for server " + server.getServerName(), e);
+            }
+            return;
+        }
+        
         String serverDir = getServerDirectory(server);
         File propertiesFile = new File(serverDir, "server.properties");
         
+        try {
+            Files.write(propertiesFile.toPath(), renderServerProperties(server).getBytes());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to write server.properties for server " + server.getServerName(), e);
+        }
+    }
+    
+    private String renderServerProperties(PlayerServer server) {
         Map<String, String> properties = new HashMap<>();
         properties.put("server-port", String.valueOf(server.getPort()));
-        properties.put("server-ip", serverHost);
+        properties.put("server-ip", nodes.getAddress(server));
         properties.put("max-players", server.getSetting("max_players"));
         properties.put("motd", server.getSetting("motd"));
         properties.put("gamemode", server.getSetting("gamemode"));
@@ -353,12 +1206,7 @@ public class ServerManager {
         for (Map.Entry<String, String> entry : properties.entrySet()) {
             sb.append(entry.getKey()).append("=").append(entry.getValue()).append("\n");
         }
-        
-        try {
-            Files.write(propertiesFile.toPath(), sb.toString().getBytes());
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to write server.properties for server " + server.getServerName(), e);
-        }
+        return sb.toString();
     }
     
     private void generateBukkitConfig(PlayerServer server) {
@@ -368,17 +1216,7 @@ public class ServerManager {
         File bukkitFile = new File(serverDir, "bukkit.yml");
         if (!bukkitFile.exists()) {
             try {
-                StringBuilder sb = new StringBuilder();
-                sb.append("settings:\n");
-                sb.append("  allow-end: true\n");
-                sb.append("  connection-throttle: 4000\n");
-                sb.append("  query-plugins: false\n");
-                sb.append("  permissions-file: permissions.yml\n");
-                sb.append("  use-exact-login-location: false\n");
-                sb.append("  ping-packet-limit: 100\n");
-                sb.append("  bungeecord: true\n"); // Required for BungeeCord
-                
-                Files.write(bukkitFile.toPath(), sb.toString().getBytes());
+                Files.write(bukkitFile.toPath(), renderBukkitConfig().getBytes());
             } catch (IOException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to write bukkit.yml for server " + server.getServerName(), e);
             }
@@ -388,62 +1226,95 @@ public class ServerManager {
         File spigotFile = new File(serverDir, "spigot.yml");
         if (!spigotFile.exists()) {
             try {
-                StringBuilder sb = new StringBuilder();
-                sb.append("settings:\n");
-                sb.append("  bungeecord: true\n"); // Required for BungeeCord
-                sb.append("  restart-on-crash: false\n");
-                sb.append("  sample-count: 12\n");
-                
-                Files.write(spigotFile.toPath(), sb.toString().getBytes());
+                Files.write(spigotFile.toPath(), renderSpigotConfig().getBytes());
             } catch (IOException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to write spigot.yml for server " + server.getServerName(), e);
             }
         }
     }
     
-    private void configureBungeeConfig(PlayerServer server) {
-        // In a real implementation, we would update the BungeeCord config.yml
-        // However, since we're registering servers dynamically in the plugin,
-        // we don't need to modify the config file
+    private String renderBukkitConfig() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("settings:\n");
+        sb.append("  allow-end: true\n");
+        sb.append("  connection-throttle: 4000\n");
+        sb.append("  query-plugins: false\n");
+        sb.append("  permissions-file: permissions.yml\n");
+        sb.append("  use-exact-login-location: false\n");
+        sb.append("  ping-packet-limit: 100\n");
+        sb.append("  bungeecord: true\n"); // Required for BungeeCord
+        return sb.toString();
     }
     
-    private void copyDirectory(Path source, Path target) throws IOException {
-        if (!Files.exists(target)) {
-            Files.createDirectories(target);
+    private String renderSpigotConfig() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("settings:\n");
+        sb.append("  bungeecord: true\n"); // Required for BungeeCord
+        sb.append("  restart-on-crash: false\n");
+        sb.append("  sample-count: 12\n");
+        if (plugin.getConfig().getBoolean("server.freeze.enabled", true)) {
+            // After a thaw the watchdog would see one endless tick and kill the server
+            sb.append("  timeout-time: ").append(watchdogTimeoutSeconds()).append("\n");
         }
-        
-        Files.walk(source).forEach(sourcePath -> {
-            try {
-                Path targetPath = target.resolve(source.relativize(sourcePath));
-                if (Files.isDirectory(sourcePath)) {
-                    if (!Files.exists(targetPath)) {
-                        Files.createDirectories(targetPath);
+        return sb.toString();
+    }
+    
+    /**
+     * Watchdog timeout that outlasts the longest freeze, since idle servers are stopped after the
+     * inactivity timeout, while still catching servers that really hang.
+     */
+    private long watchdogTimeoutSeconds() {
+        return Math.max(60, (plugin.getConfig().getLong("server.inactivity_minutes", 5) + 5) * 60);
+    }
+    
+    /**
+     * Sets settings.timeout-time in the server's spigot.yml to {@link #watchdogTimeoutSeconds()},
+     * leaving the rest of the file as the owner left it. Returns false if the file can't be updated.
+     */
+    private boolean patchWatchdogTimeout(PlayerServer server, File serverDir) {
+        Path spigotFile = serverDir.toPath().resolve("spigot.yml");
+        try {
+            if (!Files.exists(spigotFile)) {
+                Files.write(spigotFile, renderSpigotConfig().getBytes());
+                return true;
+            }
+            List<String> lines = new ArrayList<>(Files.readAllLines(spigotFile, StandardCharsets.UTF_8));
+            String timeout = "  timeout-time: " + watchdogTimeoutSeconds();
+            int settings = lines.indexOf("settings:");
+            boolean found = false;
+            for (int i = settings + 1; settings >= 0 && i < lines.size() && !found; i++) {
+                String line = lines.get(i);
+                if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0))) {
+                    break;
+                }
+                int key = line.indexOf("timeout-time:");
+                if (key >= 0 && line.substring(0, key).trim().isEmpty()) {
+                    String patched = line.substring(0, key) + timeout.trim();
+                    if (line.equals(patched)) {
+                        return true;
                     }
-                } else {
-                    Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                    lines.set(i, patched);
+                    found = true;
                 }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
             }
-        });
-    }
-    
-    private void deleteDirectory(File directory) throws IOException {
-        if (!directory.exists()) {
-            return;
-        }
-        
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    deleteDirectory(file);
-                } else {
-                    file.delete();
+            if (!found) {
+                if (settings < 0) {
+                    lines.add("settings:");
+                    settings = lines.size() - 1;
                 }
+                lines.add(settings + 1, timeout);
             }
+            Files.write(spigotFile, lines, StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not set the watchdog timeout of " + server.getServerName() + ", it will not be frozen", e);
+            return false;
         }
-        
-        directory.delete();
+    }
+    
+    private void configureBungeeConfig(PlayerServer server) {
+        // In a real implementation, we would update the BungeeCord config.yml
+        // However, since we're registering servers dynamically in the plugin,
+        // we don't need to modify the config file
     }
 }
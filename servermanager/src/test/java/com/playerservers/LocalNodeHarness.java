@@ -0,0 +1,341 @@
+package com.playerservers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Runs several {@link NodeAgent}s on localhost and exercises them the way the proxy does: placement
+ * by committed memory, starts built by the agent, stop, and the checks that keep an agent from
+ * running anything but its server jar. The servers are a stand-in jar that prints the ready line
+ * and exits on "stop", so no Minecraft server is needed. Build and run with
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.playerservers.LocalNodeHarness
+ * </pre>
+ *
+ * It exits with status 1 if any check fails.
+ */
+public class LocalNodeHarness {
+    private static final String TOKEN = "harness-token";
+    private static final long[] BUDGETS_MB = {2500, 5000, 3750};
+    private static final int HEAP_MB = 1000;
+    // Heap plus the default 25% JVM overhead, as AdmissionController.committedMemory computes it
+    private static final long COMMITTED_MB = HEAP_MB * 125L / 100;
+    private static final JvmProfile PROFILE = new JvmProfile("harness", "Serial", 0, Integer.MAX_VALUE, false, "",
+            Collections.singletonList("-XX:MaxTenuringThreshold=1"));
+
+    private final Path root;
+    private final List<Process> agents = new ArrayList<>();
+    private final Map<String, NodeClient> clients = new LinkedHashMap<>();
+    private final Map<String, Integer> ports = new LinkedHashMap<>();
+    private int failures;
+
+    private LocalNodeHarness(Path root) {
+        this.root = root;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalNodeHarness harness = new LocalNodeHarness(Files.createTempDirectory("node-harness"));
+        try {
+            harness.run();
+        } finally {
+            harness.cleanUp();
+        }
+        System.out.println(harness.failures == 0 ? "All checks passed" : harness.failures + " checks failed");
+        System.exit(harness.failures == 0 ? 0 : 1);
+    }
+
+    private void run() throws Exception {
+        Path jar = buildServerJar();
+        for (int i = 0; i < BUDGETS_MB.length; i++) {
+            String name = "node" + (i + 1);
+            int port = freePort();
+            agents.add(startAgent(name, port, BUDGETS_MB[i], jar, "--token", TOKEN));
+            clients.put(name, new NodeClient(name, "127.0.0.1", port, "127.0.0.1", TOKEN, 10000));
+            ports.put(name, port);
+        }
+        for (NodeClient client : clients.values()) {
+            awaitListening(client);
+        }
+
+        checkRejectsUnauthenticated();
+        checkRejectsRawCommand();
+        checkRejectsUnsafeFlags();
+        checkRejectsJarUpload();
+        checkPlacementAndStart();
+        checkStop();
+        checkRefusesPublicBindWithoutToken(jar);
+    }
+
+    private void checkRejectsUnauthenticated() {
+        int port = ports.get("node1");
+        NodeClient anonymous = new NodeClient("anonymous", "127.0.0.1", port, "127.0.0.1", "", 10000);
+        NodeClient wrongToken = new NodeClient("wrong", "127.0.0.1", port, "127.0.0.1", "nope", 10000);
+        check("requests without the token are refused", fails(anonymous::capacity));
+        check("requests with a wrong token are refused", fails(wrongToken::capacity));
+    }
+
+    private void checkRejectsRawCommand() throws IOException {
+        NodeClient node = clients.get("node1");
+        node.create("raw");
+        String argv = Base64.getEncoder().encodeToString("sh\n-c\ntouch pwned".getBytes(StandardCharsets.UTF_8));
+        String reply = rawRequest(ports.get("node1"), "START raw 100 " + argv);
+        check("START with a raw argv is refused (" + reply + ")", reply.startsWith("ERR"));
+        check("no process runs after a refused START", !node.isRunning("raw"));
+    }
+
+    private void checkRejectsUnsafeFlags() throws IOException {
+        NodeClient node = clients.get("node1");
+        for (String flag : Arrays.asList("-XX:OnError=touch", "-XX:Flags=/tmp/flags", "-javaagent:/tmp/agent.jar", "-cp")) {
+            JvmProfile profile = new JvmProfile("bad", "G1", 0, Integer.MAX_VALUE, false, "", Collections.singletonList(flag));
+            check("flag " + flag + " is refused", fails(() -> node.start("raw", COMMITTED_MB, HEAP_MB, freePort(), profile)));
+        }
+        check("gc names outside the known collectors are refused", fails(() -> node.start("raw", COMMITTED_MB, HEAP_MB, freePort(),
+                new JvmProfile("bad", "Epsilon;sh", 0, Integer.MAX_VALUE, false, "", Collections.emptyList()))));
+    }
+
+    private void checkRejectsJarUpload() {
+        NodeClient node = clients.get("node1");
+        check("PUT over the server jar is refused", fails(() -> node.put("raw", "server.jar", new byte[]{1}, false)));
+        check("PUT outside the server directory is refused", fails(() -> node.put("raw", "../escape.txt", new byte[]{1}, false)));
+    }
+
+    /**
+     * Places servers one after another the way NodeScheduler does until no node has room, and checks
+     * each lands on the least-loaded node and that the agents' budgets hold.
+     */
+    private void checkPlacementAndStart() throws Exception {
+        Map<String, Integer> placed = new LinkedHashMap<>();
+        for (int i = 1; i <= 12; i++) {
+            Map<String, NodeClient.Capacity> capacities = new LinkedHashMap<>();
+            for (NodeClient client : clients.values()) {
+                capacities.put(client.getName(), client.capacity());
+            }
+            String node = NodeScheduler.leastLoaded(capacities, COMMITTED_MB);
+            if (node == null) {
+                break;
+            }
+            String server = "s" + i;
+            NodeClient client = clients.get(node);
+            client.create(server);
+            client.start(server, COMMITTED_MB, HEAP_MB, freePort(), PROFILE);
+            placed.merge(node, 1, Integer::sum);
+        }
+
+        // 2500/1250, 5000/1250 and 3750/1250 servers fit
+        check("placement filled every node to its budget " + placed,
+                placed.equals(expected("node1", 2, "node2", 4, "node3", 3)));
+        for (NodeClient client : clients.values()) {
+            NodeClient.Capacity capacity = client.capacity();
+            check(client.getName() + " never commits more than its budget (" + capacity.getCommittedMB() + "/" + capacity.getBudgetMB() + " MB)",
+                    capacity.getCommittedMB() <= capacity.getBudgetMB());
+        }
+        NodeClient node1 = clients.get("node1");
+        node1.create("overflow");
+        check("a start beyond the budget is refused", fails(() -> node1.start("overflow", COMMITTED_MB, HEAP_MB, freePort(), PROFILE)));
+
+        String firstServer = node1.listRunning().get(0);
+        List<String> console = awaitConsole(node1, firstServer);
+        check("the server printed the ready line", console.stream().anyMatch(line -> line.contains("Done (")));
+        check("the agent built the heap and flags into the command " + console,
+                console.stream().anyMatch(line -> line.contains("-Xmx1000M") && line.contains("-XX:+UseSerialGC")
+                        && line.contains("-XX:MaxTenuringThreshold=1")));
+    }
+
+    private void checkStop() throws IOException {
+        NodeClient node2 = clients.get("node2");
+        String server = node2.listRunning().get(0);
+        String[] reply = node2.stop(server, 10);
+        check("STOP ends the server with the stop command (" + String.join(" ", reply) + ")",
+                reply[0].equals("STOPPED") && reply[1].equals("0"));
+        check("a stopped server no longer counts against the budget",
+                node2.capacity().getCommittedMB() == 3 * COMMITTED_MB);
+    }
+
+    private void checkRefusesPublicBindWithoutToken(Path jar) throws Exception {
+        Process agent = startAgent("public", freePort(), 1000, jar, "--bind", "0.0.0.0");
+        boolean exited = agent.waitFor(15, TimeUnit.SECONDS);
+        if (!exited) {
+            agents.add(agent);
+        }
+        check("an agent bound to 0.0.0.0 without a token refuses to start", exited && agent.exitValue() == 2);
+    }
+
+    private Process startAgent(String name, int port, long budgetMB, Path jar, String... extra) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                NodeAgent.class.getName(),
+                "--dir", root.resolve(name).toString(),
+                "--port", String.valueOf(port),
+                "--memory-mb", String.valueOf(budgetMB),
+                "--jar", jar.toString()));
+        command.addAll(Arrays.asList(extra));
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(root.resolve(name + ".log").toFile())
+                .start();
+    }
+
+    private static void awaitListening(NodeClient client) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try {
+                client.capacity();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException(client.getName() + " did not start listening");
+    }
+
+    private static List<String> awaitConsole(NodeClient client, String server) throws Exception {
+        List<String> lines = Collections.emptyList();
+        for (int attempt = 0; attempt < 100 && lines.size() < 2; attempt++) {
+            lines = client.tail(server, 10);
+            Thread.sleep(100);
+        }
+        return lines;
+    }
+
+    /**
+     * Sends one authenticated line the way an attacker or an old proxy would, returning the reply.
+     */
+    private static String rawRequest(int port, String command) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 5000);
+            socket.setSoTimeout(10000);
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("AUTH " + TOKEN + "\n" + command + "\n");
+            out.flush();
+            in.readLine();
+            return String.valueOf(in.readLine());
+        }
+    }
+
+    /**
+     * Writes a jar whose main class stands in for the server: it prints its JVM options and the
+     * ready line, then waits for "stop" on stdin.
+     */
+    private Path buildServerJar() throws IOException {
+        Path jar = root.resolve("server.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, FakeServer.class.getName());
+        String classFile = FakeServer.class.getName().replace('.', '/') + ".class";
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest);
+             InputStream in = LocalNodeHarness.class.getClassLoader().getResourceAsStream(classFile)) {
+            out.putNextEntry(new JarEntry(classFile));
+            in.transferTo(out);
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Map<String, Integer> expected(Object... pairs) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put((String) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return map;
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static boolean fails(Action action) {
+        try {
+            action.run();
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private void check(String description, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + description);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    private void cleanUp() throws IOException {
+        for (NodeClient client : clients.values()) {
+            try {
+                for (String server : client.listRunning()) {
+                    client.stop(server, 5);
+                }
+            } catch (IOException e) {
+                // Agent already gone
+            }
+        }
+        for (Process agent : agents) {
+            agent.destroy();
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                file.toFile().setWritable(true);
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public static class FakeServer {
+        public static void main(String[] args) throws IOException {
+            System.out.println("JVM options: " + String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+            System.out.println("Done (0.1s)! For help, type \"help\"");
+            System.out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equals("stop")) {
+                    return;
+                }
+            }
+        }
+    }
+}